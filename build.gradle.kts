@@ -2,6 +2,7 @@ plugins {
 	id("java")
 	id("org.springframework.boot") version "3.5.3"
 	id("io.spring.dependency-management") version "1.1.7"
+	id("me.champeau.jmh") version "0.7.3"
 }
 
 group = "com.cache-test"
@@ -26,20 +27,25 @@ dependencies {
 	implementation("org.springframework.boot:spring-boot-starter-data-jpa")
 	implementation("org.springframework.boot:spring-boot-starter-web")
 	implementation("org.springframework.boot:spring-boot-starter-cache")
+	implementation("org.springframework.boot:spring-boot-starter-actuator")
 	implementation("org.hibernate.orm:hibernate-jcache")
-	implementation("org.ehcache:ehcache")
+	implementation("org.ehcache:ehcache::jakarta")
 	implementation("javax.cache:cache-api")
+	implementation("com.github.ben-manes.caffeine:caffeine")
 
 	compileOnly("org.projectlombok:lombok")
 	annotationProcessor("org.projectlombok:lombok")
 
-	runtimeOnly("org.postgresql:postgresql")
+	implementation("org.postgresql:postgresql")
+	runtimeOnly("org.glassfish.jaxb:jaxb-runtime")
 
 	testImplementation("org.springframework.boot:spring-boot-starter-test")
 	testImplementation("com.h2database:h2")
 	testCompileOnly("org.projectlombok:lombok")
 	testAnnotationProcessor("org.projectlombok:lombok")
 	testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+
+	jmhRuntimeOnly("com.h2database:h2")
 }
 
 tasks.withType<Test> {
@@ -50,4 +56,16 @@ tasks.withType<JavaCompile> {
 	options.encoding = "UTF-8"
 	sourceCompatibility = "21"
 	targetCompatibility = "21"
-}
\ No newline at end of file
+}
+
+jmh {
+	jmhVersion = "1.37"
+	includeTests = false
+	profilers = listOf("gc")
+	resultFormat = "JSON"
+	// e.g. ./gradlew jmh -PjmhIncludes=CacheLayerBenchmark -PdatasetSize=1000,100000
+	(findProperty("jmhIncludes") as String?)?.let { includes = listOf(it) }
+	(findProperty("datasetSize") as String?)?.let {
+		benchmarkParameters.put("datasetSize", objects.listProperty<String>().value(it.split(",")))
+	}
+}
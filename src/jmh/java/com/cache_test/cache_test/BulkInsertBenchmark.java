@@ -0,0 +1,77 @@
+package com.cache_test.cache_test;
+
+import com.cache_test.cache_test.entity.Users;
+import com.cache_test.cache_test.repo.UserRepository;
+import com.cache_test.cache_test.repo.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rows per second inserted by the bulk path against the ways rows were written before it: one
+ * {@code save} per row, each in its own transaction as the single-row endpoint does, and
+ * {@code saveAll} of the whole list in one transaction.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(BulkInsertBenchmark.ROWS)
+public class BulkInsertBenchmark {
+
+    static final int ROWS = 1000;
+
+    private static final AtomicLong sequence = new AtomicLong();
+
+    @State(Scope.Thread)
+    public static class Rows {
+
+        List<Users> users;
+
+        @Setup(Level.Invocation)
+        public void create() {
+            users = new ArrayList<>(ROWS);
+            for (int i = 0; i < ROWS; i++) {
+                long n = sequence.incrementAndGet();
+                Users user = new Users();
+                user.setName("Bulk User " + n);
+                user.setEmail("bulk" + n + "@example.com");
+                user.setAge((int) (18 + n % 60));
+                users.add(user);
+            }
+        }
+    }
+
+    @Benchmark
+    public void saveEach(CacheStack stack, Rows rows) {
+        UserRepository userRepository = stack.bean(UserRepository.class);
+        for (Users user : rows.users) {
+            userRepository.save(user);
+        }
+    }
+
+    @Benchmark
+    public void saveAll(CacheStack stack, Rows rows) {
+        stack.bean(UserRepository.class).saveAll(rows.users);
+    }
+
+    @Benchmark
+    public void bulkInsert(CacheStack stack, Rows rows) {
+        stack.bean(UserService.class).saveAll(rows.users);
+    }
+}
@@ -0,0 +1,197 @@
+package com.cache_test.cache_test;
+
+import com.cache_test.cache_test.cache.CacheKey;
+import com.cache_test.cache_test.entity.Product;
+import com.cache_test.cache_test.entity.Users;
+import com.cache_test.cache_test.repo.ProductService;
+import com.cache_test.cache_test.repo.UserService;
+import jakarta.persistence.CacheRetrieveMode;
+import jakarta.persistence.CacheStoreMode;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costs of serving the same rows from each layer of the stack: the database with every cache bypassed,
+ * the persistence context (L1), the Hibernate second-level cache (L2), the query cache and the Spring
+ * caches in front of the services. Throughput and sampled latency percentiles come from the benchmark
+ * modes; the allocation rate from the {@code gc} profiler configured in the build.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheLayerBenchmark {
+
+    private static final String OLDER_THAN = "SELECT u FROM Users u WHERE u.age > :age";
+
+    /**
+     * Per-thread persistence context that already holds every user, so {@code find} never leaves L1.
+     */
+    @State(Scope.Thread)
+    public static class PersistenceContext {
+
+        EntityManager entityManager;
+
+        @Setup(Level.Iteration)
+        public void open(CacheStack stack) {
+            entityManager = stack.bean(EntityManagerFactory.class).createEntityManager();
+            for (Long id : stack.userIds) {
+                entityManager.find(Users.class, id);
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void close() {
+            entityManager.close();
+        }
+    }
+
+    /**
+     * Everything except the database warmed up: L2 regions, the query cache and the Spring caches.
+     */
+    @State(Scope.Benchmark)
+    public static class Warm {
+
+        EntityManagerFactory entityManagerFactory;
+
+        UserService userService;
+
+        ProductService productService;
+
+        Cache users;
+
+        @Setup(Level.Trial)
+        public void warm(CacheStack stack) {
+            entityManagerFactory = stack.bean(EntityManagerFactory.class);
+            userService = stack.bean(UserService.class);
+            productService = stack.bean(ProductService.class);
+            users = stack.bean(CacheManager.class).getCache("users");
+
+            EntityManager entityManager = entityManagerFactory.createEntityManager();
+            try {
+                for (Long id : stack.userIds) {
+                    entityManager.find(Users.class, id);
+                }
+                olderThan(entityManager, 30).getResultList();
+            }
+            finally {
+                entityManager.close();
+            }
+            for (int i = 0; i < stack.userIds.length; i++) {
+                userService.findById(stack.userIds[i]);
+                userService.findByEmail(stack.emails[i]);
+                productService.findByUserId(stack.userIds[i]);
+            }
+            userService.findUsersOlderThan(30);
+
+            long inL2 = Arrays.stream(stack.userIds)
+                .filter(id -> entityManagerFactory.getCache().contains(Users.class, id))
+                .count();
+            if (inL2 < stack.userIds.length) {
+                throw new IllegalStateException(
+                    "Only " + inL2 + " of " + stack.userIds.length + " users are in L2, the L2 hits would miss"
+                );
+            }
+        }
+    }
+
+    @Benchmark
+    public Users findByIdColdDatabase(CacheStack stack, Warm warm) {
+        EntityManager entityManager = warm.entityManagerFactory.createEntityManager();
+        try {
+            Map<String, Object> bypass = Map.of(
+                "jakarta.persistence.cache.retrieveMode", CacheRetrieveMode.BYPASS,
+                "jakarta.persistence.cache.storeMode", CacheStoreMode.BYPASS
+            );
+            return entityManager.find(Users.class, stack.userIds[stack.randomIndex()], bypass);
+        }
+        finally {
+            entityManager.close();
+        }
+    }
+
+    @Benchmark
+    public Users findByIdL1Hit(CacheStack stack, PersistenceContext context) {
+        return context.entityManager.find(Users.class, stack.userIds[stack.randomIndex()]);
+    }
+
+    @Benchmark
+    public Users findByIdL2Hit(CacheStack stack, Warm warm) {
+        EntityManager entityManager = warm.entityManagerFactory.createEntityManager();
+        try {
+            return entityManager.find(Users.class, stack.userIds[stack.randomIndex()]);
+        }
+        finally {
+            entityManager.close();
+        }
+    }
+
+    @Benchmark
+    public List<Users> findUsersOlderThanQueryCacheHit(Warm warm) {
+        EntityManager entityManager = warm.entityManagerFactory.createEntityManager();
+        try {
+            return olderThan(entityManager, 30).getResultList();
+        }
+        finally {
+            entityManager.close();
+        }
+    }
+
+    @Benchmark
+    public Users findByIdSpringCacheHit(CacheStack stack, Warm warm) {
+        return warm.userService.findById(stack.userIds[stack.randomIndex()]).orElse(null);
+    }
+
+    @Benchmark
+    public Users findByEmailSpringCacheHit(CacheStack stack, Warm warm) {
+        return warm.userService.findByEmail(stack.emails[stack.randomIndex()]).orElse(null);
+    }
+
+    @Benchmark
+    public List<Product> findByUserIdSpringCacheHit(CacheStack stack, Warm warm) {
+        return warm.productService.findByUserId(stack.userIds[stack.randomIndex()]);
+    }
+
+    @Benchmark
+    public List<Users> findUsersOlderThanRangeCacheHit(Warm warm) {
+        return warm.userService.findUsersOlderThan(30);
+    }
+
+    /**
+     * A Spring cache miss through the service, answered by the L2 region behind it.
+     */
+    @Benchmark
+    public Users findByIdSpringCacheMiss(CacheStack stack, Warm warm) {
+        Long id = stack.userIds[stack.randomIndex()];
+        warm.users.evict(CacheKey.userById(id));
+        return warm.userService.findById(id).orElse(null);
+    }
+
+    private static TypedQuery<Users> olderThan(EntityManager entityManager, int age) {
+        return entityManager.createQuery(OLDER_THAN, Users.class)
+            .setParameter("age", age)
+            .setHint(HibernateHints.HINT_CACHEABLE, true);
+    }
+}
@@ -0,0 +1,122 @@
+package com.cache_test.cache_test;
+
+import com.cache_test.cache_test.entity.Product;
+import com.cache_test.cache_test.entity.Users;
+import com.cache_test.cache_test.repo.ProductRepository;
+import com.cache_test.cache_test.repo.UserRepository;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The whole application on an in-memory H2 database, seeded with {@code datasetSize} users owning two
+ * products each. Shared by all benchmarks of a trial.
+ */
+@State(Scope.Benchmark)
+public class CacheStack {
+
+    @Param("1000")
+    public int datasetSize;
+
+    public ConfigurableApplicationContext context;
+
+    public Long[] userIds;
+
+    public String[] emails;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(CacheTestApplication.class)
+            .properties(properties())
+            .run();
+        seed();
+        seeded();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    /**
+     * Called once the dataset is in place, for subclasses that need to warm something up.
+     */
+    protected void seeded() {
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public int randomIndex() {
+        return ThreadLocalRandom.current().nextInt(userIds.length);
+    }
+
+    /**
+     * Settings of the benchmark context: H2 instead of Postgres, no web server and no per-statement
+     * logging, which would otherwise dominate the numbers.
+     */
+    protected Map<String, Object> properties() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.main.web-application-type", "none");
+        properties.put("spring.datasource.url", "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1");
+        properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("app.cache.warmup.enabled", "false");
+        // ehcache.xml holds fewer users than the dataset, which would turn L2 hits into misses
+        properties.put("app.cache.jcache-config", "classpath:ehcache-bench.xml");
+        properties.put("spring.jpa.properties.hibernate.format_sql", "false");
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.com.cache_test", "WARN");
+        properties.put("logging.level.org.hibernate.SQL", "WARN");
+        properties.put("logging.level.org.hibernate.type.descriptor.sql.BasicBinder", "WARN");
+        properties.put("logging.level.org.hibernate.cache", "WARN");
+        properties.put("logging.level.org.springframework.cache", "WARN");
+        return properties;
+    }
+
+    private void seed() {
+        UserRepository userRepository = bean(UserRepository.class);
+        ProductRepository productRepository = bean(ProductRepository.class);
+
+        List<Users> users = new ArrayList<>(datasetSize);
+        for (int i = 0; i < datasetSize; i++) {
+            Users user = new Users();
+            user.setName("Bench User " + i);
+            user.setEmail("bench" + i + "@example.com");
+            user.setAge(18 + i % 60);
+            users.add(user);
+        }
+        users = userRepository.saveAll(users);
+
+        List<Product> products = new ArrayList<>(datasetSize * 2);
+        for (Users user : users) {
+            for (int i = 0; i < 2; i++) {
+                Product product = new Product();
+                product.setName("Product " + i + " of " + user.getId());
+                product.setDescription("Benchmark product");
+                product.setPrice(BigDecimal.valueOf(10 + (user.getId() * 7 + i * 13) % 2000));
+                product.setUser(user);
+                products.add(product);
+            }
+        }
+        productRepository.saveAll(products);
+
+        userIds = users.stream().map(Users::getId).toArray(Long[]::new);
+        emails = users.stream().map(Users::getEmail).toArray(String[]::new);
+    }
+}
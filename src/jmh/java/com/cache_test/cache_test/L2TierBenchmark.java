@@ -0,0 +1,72 @@
+package com.cache_test.cache_test;
+
+import com.cache_test.cache_test.entity.Users;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * L2 entity hits served from each Ehcache tier. The {@code offheap} and {@code disk} configurations keep
+ * only a handful of entries on heap, so nearly every hit is deserialized from the lower tier. Run with the
+ * {@code gc} profiler (the build default) to compare GC time alongside hit latency.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-XX:MaxDirectMemorySize=256m")
+public class L2TierBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class TieredCacheStack extends CacheStack {
+
+        @Param({"heap", "offheap", "disk"})
+        public String tier;
+
+        EntityManagerFactory entityManagerFactory;
+
+        @Override
+        protected Map<String, Object> properties() {
+            Map<String, Object> properties = super.properties();
+            properties.put("app.cache.jcache-config", "classpath:ehcache-bench-" + tier + ".xml");
+            return properties;
+        }
+
+        @Override
+        protected void seeded() {
+            entityManagerFactory = bean(EntityManagerFactory.class);
+            EntityManager entityManager = entityManagerFactory.createEntityManager();
+            try {
+                for (Long id : userIds) {
+                    entityManager.find(Users.class, id);
+                }
+            }
+            finally {
+                entityManager.close();
+            }
+        }
+    }
+
+    @Benchmark
+    public Users findByIdL2Hit(TieredCacheStack stack) {
+        EntityManager entityManager = stack.entityManagerFactory.createEntityManager();
+        try {
+            return entityManager.find(Users.class, stack.userIds[stack.randomIndex()]);
+        }
+        finally {
+            entityManager.close();
+        }
+    }
+}
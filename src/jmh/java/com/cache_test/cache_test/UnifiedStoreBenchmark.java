@@ -0,0 +1,96 @@
+package com.cache_test.cache_test;
+
+import com.cache_test.cache_test.entity.Product;
+import com.cache_test.cache_test.entity.Users;
+import com.cache_test.cache_test.repo.ProductService;
+import com.cache_test.cache_test.repo.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cached entity lookups with entities held by both the Spring caches and the L2 regions, against the
+ * {@code unified} store, where the Spring caches keep ids only. Once the dataset is cached by id, by email
+ * and by owner, the heap it retains is printed per configuration; the benchmarks show what resolving ids
+ * through L2 costs per hit.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UnifiedStoreBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class UnifiedCacheStack extends CacheStack {
+
+        @Param({"false", "true"})
+        public boolean unified;
+
+        UserService userService;
+
+        ProductService productService;
+
+        @Override
+        protected Map<String, Object> properties() {
+            Map<String, Object> properties = super.properties();
+            properties.put("app.cache.unified", String.valueOf(unified));
+            properties.put("app.cache.jcache-config", "classpath:ehcache-unified.xml");
+            return properties;
+        }
+
+        @Override
+        protected void seeded() {
+            userService = bean(UserService.class);
+            productService = bean(ProductService.class);
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            long before = usedHeap(memory);
+            for (int i = 0; i < userIds.length; i++) {
+                userService.findById(userIds[i]);
+                userService.findByEmail(emails[i]);
+                productService.findByUserId(userIds[i]);
+            }
+            long retained = usedHeap(memory) - before;
+            System.out.printf(
+                "%nunified=%s: %d KB retained by caching %d users and their products%n",
+                unified, retained / 1024, userIds.length
+            );
+        }
+
+        private static long usedHeap(MemoryMXBean memory) {
+            for (int i = 0; i < 3; i++) {
+                System.gc();
+            }
+            return memory.getHeapMemoryUsage().getUsed();
+        }
+    }
+
+    @Benchmark
+    public Optional<Users> findUserById(UnifiedCacheStack stack) {
+        return stack.userService.findById(stack.userIds[stack.randomIndex()]);
+    }
+
+    @Benchmark
+    public Optional<Users> findUserByEmail(UnifiedCacheStack stack) {
+        return stack.userService.findByEmail(stack.emails[stack.randomIndex()]);
+    }
+
+    @Benchmark
+    public List<Product> findProductsByUserId(UnifiedCacheStack stack) {
+        return stack.productService.findByUserId(stack.userIds[stack.randomIndex()]);
+    }
+}
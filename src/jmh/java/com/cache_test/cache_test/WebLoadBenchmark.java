@@ -0,0 +1,80 @@
+package com.cache_test.cache_test;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP load against the embedded Tomcat with platform request threads and with virtual threads, from
+ * more concurrent clients than the default Tomcat pool has threads. Sample-time mode reports the p99.
+ * In-memory H2 answers in microseconds, which hides most of the JDBC wait virtual threads are meant to
+ * absorb; point {@code spring.datasource.url} at Postgres for representative numbers.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(256)
+public class WebLoadBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class WebStack extends CacheStack {
+
+        @Param({"platform", "virtual"})
+        public String threads;
+
+        HttpClient client;
+
+        String baseUrl;
+
+        @Override
+        protected Map<String, Object> properties() {
+            Map<String, Object> properties = super.properties();
+            properties.put("spring.main.web-application-type", "servlet");
+            properties.put("server.port", "0");
+            properties.put("spring.threads.virtual.enabled", String.valueOf(threads.equals("virtual")));
+            return properties;
+        }
+
+        @Override
+        protected void seeded() {
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        }
+
+        int get(String path) throws IOException, InterruptedException {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        }
+    }
+
+    /**
+     * A keyset page is never cached, so every request holds a JDBC connection.
+     */
+    @Benchmark
+    public int productsPage(WebStack stack) throws IOException, InterruptedException {
+        return stack.get("/api/products/with-user/page?size=20&after=" + stack.randomIndex() * 2L);
+    }
+
+    @Benchmark
+    public int userById(WebStack stack) throws IOException, InterruptedException {
+        return stack.get("/api/users/" + stack.userIds[stack.randomIndex()]);
+    }
+}
@@ -0,0 +1,108 @@
+package com.cache_test.cache_test.cache;
+
+import com.cache_test.cache_test.repo.ProductService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the former SpEL string keys with {@link TypedKeyGenerator}, both for building a key and
+ * for a hit in a map that already holds it, which is what a {@code @Cacheable} hit costs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheKeyBenchmark {
+
+    private final ParameterNameDiscoverer parameterNames = new DefaultParameterNameDiscoverer();
+
+    private final TypedKeyGenerator keyGenerator = new TypedKeyGenerator();
+
+    private final Map<Object, Object> cache = new ConcurrentHashMap<>();
+
+    private Method findByUserId;
+
+    private Method findByPrice;
+
+    private Expression userKey;
+
+    private Expression priceKey;
+
+    private Object[] userArgs;
+
+    private Object[] priceArgs;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        findByUserId = ProductService.class.getMethod("findByUserId", Long.class);
+        findByPrice = ProductService.class.getMethod("findProductsWithPriceGreaterThan", BigDecimal.class);
+
+        SpelExpressionParser parser = new SpelExpressionParser();
+        userKey = parser.parseExpression("'user_' + #userId");
+        priceKey = parser.parseExpression("'price_gt_' + #price");
+
+        userArgs = new Object[] {42L};
+        priceArgs = new Object[] {new BigDecimal("100.00")};
+
+        cache.put(spel(userKey, findByUserId, userArgs), Boolean.TRUE);
+        cache.put(spel(priceKey, findByPrice, priceArgs), Boolean.TRUE);
+        cache.put(keyGenerator.generate(this, findByUserId, userArgs), Boolean.TRUE);
+        cache.put(keyGenerator.generate(this, findByPrice, priceArgs), Boolean.TRUE);
+    }
+
+    @Benchmark
+    public Object spelUserKey() {
+        return spel(userKey, findByUserId, userArgs);
+    }
+
+    @Benchmark
+    public Object typedUserKey() {
+        return keyGenerator.generate(this, findByUserId, userArgs);
+    }
+
+    @Benchmark
+    public Object spelPriceKey() {
+        return spel(priceKey, findByPrice, priceArgs);
+    }
+
+    @Benchmark
+    public Object typedPriceKey() {
+        return keyGenerator.generate(this, findByPrice, priceArgs);
+    }
+
+    @Benchmark
+    public Object spelUserHit() {
+        return cache.get(spel(userKey, findByUserId, userArgs));
+    }
+
+    @Benchmark
+    public Object typedUserHit() {
+        return cache.get(keyGenerator.generate(this, findByUserId, userArgs));
+    }
+
+    private Object spel(Expression expression, Method method, Object[] args) {
+        // Spring builds a fresh evaluation context for every cache operation
+        return expression.getValue(new MethodBasedEvaluationContext(this, method, args, parameterNames));
+    }
+}
@@ -0,0 +1,127 @@
+package com.cache_test.cache_test.cache.codec;
+
+import com.cache_test.cache_test.CacheStack;
+import com.cache_test.cache_test.entity.Product;
+import com.cache_test.cache_test.entity.Users;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode throughput of {@link EntityCodec} against Java serialization, and bytes per entry,
+ * printed once per configuration. The entities are not serializable, so the {@code java} format serializes
+ * what the L2 regions hold for the same rows: Hibernate's cache entries, read back from the regions. Those
+ * always take Java serialization off-heap, see {@link CompactValueSerializer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityCodecBenchmark {
+
+    @Param({"compact", "java"})
+    public String format;
+
+    private Object user;
+
+    private Object product;
+
+    private byte[] encodedUser;
+
+    private byte[] encodedProduct;
+
+    @Setup
+    public void setUp(CacheStack stack) throws IOException {
+        Long userId = stack.userIds[0];
+        EntityManager entityManager = stack.bean(EntityManagerFactory.class).createEntityManager();
+        try {
+            Users owner = entityManager.find(Users.class, userId);
+            Product owned = entityManager
+                .createQuery("SELECT p FROM Product p WHERE p.user.id = :userId", Product.class)
+                .setParameter("userId", userId)
+                .setMaxResults(1)
+                .getSingleResult();
+            if ("compact".equals(format)) {
+                user = owner;
+                product = owned;
+            }
+            else {
+                CacheManager jcacheManager = stack.bean(CacheManager.class);
+                user = regionEntry(jcacheManager, Users.class);
+                product = regionEntry(jcacheManager, Product.class);
+            }
+        }
+        finally {
+            entityManager.close();
+        }
+        encodedUser = encodeUser();
+        encodedProduct = encodeProduct();
+        System.out.printf(
+            "%n%s: %d bytes per user, %d bytes per product%n", format, encodedUser.length, encodedProduct.length
+        );
+    }
+
+    @Benchmark
+    public byte[] encodeUser() throws IOException {
+        return "compact".equals(format) ? EntityCodec.encode(user) : javaSerialize(user);
+    }
+
+    @Benchmark
+    public byte[] encodeProduct() throws IOException {
+        return "compact".equals(format) ? EntityCodec.encode(product) : javaSerialize(product);
+    }
+
+    @Benchmark
+    public Object decodeUser() throws IOException, ClassNotFoundException {
+        return "compact".equals(format) ? EntityCodec.decode(encodedUser) : javaDeserialize(encodedUser);
+    }
+
+    @Benchmark
+    public Object decodeProduct() throws IOException, ClassNotFoundException {
+        return "compact".equals(format) ? EntityCodec.decode(encodedProduct) : javaDeserialize(encodedProduct);
+    }
+
+    // the seeded rows are alike, so any entry of the region stands for the loaded one
+    private static Object regionEntry(CacheManager jcacheManager, Class<?> entity) {
+        Cache<Object, Object> region = jcacheManager.getCache(entity.getName());
+        for (Cache.Entry<Object, Object> entry : region) {
+            return entry.getValue();
+        }
+        throw new IllegalStateException("The " + entity.getSimpleName() + " region is empty");
+    }
+
+    private static byte[] javaSerialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object javaDeserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.cache_test.cache_test.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The recorded hottest keys, stored as one {@code KIND<tab>value} line per key, hottest first.
+ */
+@Slf4j
+final class AccessProfile {
+
+    private AccessProfile() {
+    }
+
+    static List<CacheKey> read(Path file) throws IOException {
+        List<CacheKey> keys = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            int tab = line.indexOf('\t');
+            if (tab < 0) {
+                continue;
+            }
+            try {
+                QueryKind kind = QueryKind.valueOf(line.substring(0, tab));
+                String value = line.substring(tab + 1);
+                boolean email = kind == QueryKind.USER_BY_EMAIL || kind == QueryKind.USER_VIEW_BY_EMAIL;
+                keys.add(CacheKey.of(kind, email ? value : Long.valueOf(value)));
+            }
+            catch (IllegalArgumentException e) {
+                // written by a version with other query kinds
+                log.debug("Skipping access profile line '{}': {}", line, e.getMessage());
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Replaces the file atomically, so a crash while saving leaves the previous profile intact.
+     */
+    static void write(Path file, List<CacheKey> keys) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (CacheKey key : keys) {
+                writer.write(key.kind().name());
+                writer.write('\t');
+                writer.write(String.valueOf(key.value()));
+                writer.newLine();
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
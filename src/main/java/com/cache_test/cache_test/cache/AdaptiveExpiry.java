@@ -0,0 +1,57 @@
+package com.cache_test.cache_test.cache;
+
+import com.cache_test.cache_test.config.CacheProperties;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+
+import java.time.Duration;
+
+/**
+ * Gives each entry a lifetime of {@code base * log2(1 + (reads + 1) / (writes + 1))} from the recent
+ * activity of its entity, within the configured bounds, see {@link KeyActivity}. The lifetime is fixed when
+ * the entry is written. Reads are recorded by {@link RefreshAheadCaffeineCache}, as Caffeine would count
+ * its refreshes as reads too.
+ */
+@RequiredArgsConstructor
+public class AdaptiveExpiry implements Expiry<Object, Object> {
+
+    private final Duration base;
+
+    private final CacheProperties.Adaptive adaptive;
+
+    private final KeyActivity activity;
+
+    private final Timer chosen;
+
+    @Override
+    public long expireAfterCreate(Object key, Object value, long currentTime) {
+        return ttl(key);
+    }
+
+    @Override
+    public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+        return ttl(key);
+    }
+
+    @Override
+    public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+        return currentDuration;
+    }
+
+    long ttl(Object key) {
+        long nanos = lifetime(base, adaptive, activity, key);
+        chosen.record(Duration.ofNanos(nanos));
+        return nanos;
+    }
+
+    /**
+     * @return the lifetime in nanoseconds that an entry for {@code key} written now would get
+     */
+    static long lifetime(Duration base, CacheProperties.Adaptive adaptive, KeyActivity activity, Object key) {
+        double ratio = (activity.reads(key) + 1.0) / (activity.writes(key) + 1.0);
+        double scale = Math.log(1 + ratio) / Math.log(2);
+        long nanos = (long) (base.toNanos() * scale);
+        return Math.max(adaptive.getMinTtl().toNanos(), Math.min(adaptive.getMaxTtl().toNanos(), nanos));
+    }
+}
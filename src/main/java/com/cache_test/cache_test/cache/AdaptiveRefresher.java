@@ -0,0 +1,89 @@
+package com.cache_test.cache_test.cache;
+
+import com.cache_test.cache_test.config.CacheProperties;
+import com.cache_test.cache_test.metrics.CacheMetrics;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Policy;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Reloads hot entries of the adaptive caches in the background shortly before they expire, so their
+ * readers never wait for the load. "Shortly" is a fraction of the entry's lifetime, so short-lived
+ * entries of often written entities are refreshed as well as long-lived ones. Cold entries are left to
+ * expire. Reloading writes the entry again, which gives it a new lifetime from the activity seen so far.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AdaptiveRefresher {
+
+    private final CacheManager cacheManager;
+
+    private final CacheProperties cacheProperties;
+
+    private final KeyActivity activity;
+
+    private final CacheMetrics metrics;
+
+    private final TaskScheduler taskScheduler;
+
+    @PostConstruct
+    void start() {
+        if (cacheProperties.getCaches().values().stream().anyMatch(spec -> spec.getAdaptive() != null)) {
+            Duration interval = cacheProperties.getActivity().getRefreshInterval();
+            taskScheduler.scheduleWithFixedDelay(this::refreshHotEntries, Instant.now().plus(interval), interval);
+        }
+    }
+
+    /**
+     * @return the number of entries refreshed
+     */
+    public int refreshHotEntries() {
+        int refreshed = 0;
+        for (Map.Entry<String, CacheProperties.Spec> entry : cacheProperties.getCaches().entrySet()) {
+            CacheProperties.Adaptive adaptive = entry.getValue().getAdaptive();
+            Cache cache = cacheManager.getCache(entry.getKey());
+            if (adaptive != null && cache != null && cache.getNativeCache() instanceof LoadingCache<?, ?> loading) {
+                refreshed += refresh(entry.getKey(), entry.getValue().getExpireAfterWrite(), adaptive, loading);
+            }
+        }
+        return refreshed;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int refresh(String name, Duration base, CacheProperties.Adaptive adaptive, LoadingCache<?, ?> cache) {
+        LoadingCache<Object, Object> loading = (LoadingCache<Object, Object>) cache;
+        Optional<Policy.VarExpiration<Object, Object>> expiration = loading.policy().expireVariably();
+        if (expiration.isEmpty()) {
+            return 0;
+        }
+        int refreshed = 0;
+        for (Object key : loading.asMap().keySet()) {
+            // the entry's own lifetime is not kept; the one it would get now is close, and moves with it
+            long window = (long) (AdaptiveExpiry.lifetime(base, adaptive, activity, key) * adaptive.getRefreshAhead());
+            boolean expiring = expiration.get().getExpiresAfter(key)
+                .map(remaining -> remaining.toNanos() <= window)
+                .orElse(false);
+            if (expiring && activity.reads(key) >= adaptive.getHotReads()) {
+                loading.refresh(key);
+                refreshed++;
+            }
+        }
+        if (refreshed > 0) {
+            metrics.refreshes(name).increment(refreshed);
+            log.debug("Refreshed {} hot entries of {} ahead of expiry", refreshed, name);
+        }
+        return refreshed;
+    }
+}
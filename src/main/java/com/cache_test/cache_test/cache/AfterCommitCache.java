@@ -0,0 +1,156 @@
+package com.cache_test.cache_test.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Defers puts, evictions and clears made inside a transaction until it commits, see
+ * {@link CacheWriteBuffer}; outside of one they apply right away. The transaction itself sees its pending
+ * writes: a pending put is returned as a hit, and a pending eviction makes lookups of the key go to the
+ * loader without caching what it returns, since that may be uncommitted state.
+ */
+@RequiredArgsConstructor
+public class AfterCommitCache implements Cache {
+
+    private final Cache delegate;
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        CacheWriteBuffer.Write pending = pending(key);
+        if (pending == null) {
+            return delegate.get(key);
+        }
+        return pending instanceof CacheWriteBuffer.Put put ? new SimpleValueWrapper(put.value()) : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        CacheWriteBuffer.Write pending = pending(key);
+        if (pending == null) {
+            return delegate.get(key, type);
+        }
+        Object value = pending instanceof CacheWriteBuffer.Put put ? put.value() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        CacheWriteBuffer.Write pending = pending(key);
+        if (pending == null) {
+            return delegate.get(key, valueLoader);
+        }
+        if (pending instanceof CacheWriteBuffer.Put put) {
+            return (T) put.value();
+        }
+        try {
+            return valueLoader.call();
+        }
+        catch (Exception ex) {
+            throw new ValueRetrievalException(key, valueLoader, ex);
+        }
+    }
+
+    @Override
+    public CompletableFuture<?> retrieve(Object key) {
+        return delegate.retrieve(key);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> retrieve(Object key, Supplier<CompletableFuture<T>> valueLoader) {
+        return delegate.retrieve(key, valueLoader);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        CacheWriteBuffer buffer = CacheWriteBuffer.current();
+        if (buffer != null) {
+            buffer.put(delegate, key, value);
+        }
+        else {
+            delegate.put(key, value);
+        }
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        CacheWriteBuffer buffer = CacheWriteBuffer.current();
+        if (buffer == null) {
+            return delegate.putIfAbsent(key, value);
+        }
+        ValueWrapper existing = get(key);
+        if (existing == null) {
+            buffer.put(delegate, key, value);
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        CacheWriteBuffer buffer = CacheWriteBuffer.current();
+        if (buffer != null) {
+            buffer.evict(delegate, key);
+        }
+        else {
+            delegate.evict(key);
+        }
+    }
+
+    /**
+     * Inside a transaction the eviction is deferred, so this reports whether the key was cached when it
+     * was requested.
+     */
+    @Override
+    public boolean evictIfPresent(Object key) {
+        CacheWriteBuffer buffer = CacheWriteBuffer.current();
+        if (buffer == null) {
+            return delegate.evictIfPresent(key);
+        }
+        boolean present = get(key) != null;
+        buffer.evict(delegate, key);
+        return present;
+    }
+
+    @Override
+    public void clear() {
+        CacheWriteBuffer buffer = CacheWriteBuffer.current();
+        if (buffer != null) {
+            buffer.clear(delegate);
+        }
+        else {
+            delegate.clear();
+        }
+    }
+
+    /**
+     * Clears right away, as the {@link Cache} contract asks of this method.
+     */
+    @Override
+    public boolean invalidate() {
+        return delegate.invalidate();
+    }
+
+    private CacheWriteBuffer.Write pending(Object key) {
+        CacheWriteBuffer buffer = CacheWriteBuffer.existing();
+        return buffer != null ? buffer.pending(delegate, key) : null;
+    }
+}
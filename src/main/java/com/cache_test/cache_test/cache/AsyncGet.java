@@ -0,0 +1,58 @@
+package com.cache_test.cache_test.cache;
+
+import org.springframework.cache.Cache;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Cache-first lookup returning a future. A hit completes the future on the calling thread; a miss runs
+ * the cached method on the given executor, so it still loads once per key however many callers wait.
+ */
+public final class AsyncGet {
+
+    private AsyncGet() {
+    }
+
+    /**
+     * @param load the cached method, called through its proxy
+     */
+    public static <T> CompletableFuture<T> get(
+        Cache cache, CacheKey key, Supplier<T> load, Executor executor
+    ) {
+        if (isPresent(cache, key)) {
+            Cache.ValueWrapper hit = cache.get(key);
+            if (hit != null) {
+                @SuppressWarnings("unchecked")
+                T value = (T) hit.get();
+                return CompletableFuture.completedFuture(value);
+            }
+        }
+        return CompletableFuture.supplyAsync(load, executor);
+    }
+
+    /**
+     * For cached methods returning {@link Optional}, whose cache entries hold the unwrapped value.
+     */
+    public static <T> CompletableFuture<Optional<T>> getOptional(
+        Cache cache, CacheKey key, Supplier<Optional<T>> load, Executor executor
+    ) {
+        if (isPresent(cache, key)) {
+            Cache.ValueWrapper hit = cache.get(key);
+            if (hit != null) {
+                @SuppressWarnings("unchecked")
+                T value = (T) hit.get();
+                return CompletableFuture.completedFuture(Optional.ofNullable(value));
+            }
+        }
+        return CompletableFuture.supplyAsync(load, executor);
+    }
+
+    // checks a Caffeine cache without recording a miss, which the cached method records once it runs
+    private static boolean isPresent(Cache cache, CacheKey key) {
+        return !(cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> caffeine)
+            || caffeine.asMap().containsKey(key);
+    }
+}
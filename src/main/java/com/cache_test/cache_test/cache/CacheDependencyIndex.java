@@ -0,0 +1,234 @@
+package com.cache_test.cache_test.cache;
+
+import com.cache_test.cache_test.dto.ProductView;
+import com.cache_test.cache_test.dto.UserView;
+import com.cache_test.cache_test.entity.Product;
+import com.cache_test.cache_test.entity.Users;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records which entities every cached entry was built from, so a committed write evicts exactly the
+ * entries it could have changed: entries containing the entity and lists of the same owner.
+ * Threshold queries are served by {@link RangeQueryCache} instead.
+ */
+@Component
+@Slf4j
+public class CacheDependencyIndex {
+
+    private final Map<String, Cache> caches = new ConcurrentHashMap<>();
+
+    private final Map<Tag, Set<CacheKey>> keysByTag = new ConcurrentHashMap<>();
+
+    private final Map<CacheKey, Set<Tag>> tagsByKey = new ConcurrentHashMap<>();
+
+    private final Map<Tag, Set<Loading>> loadingByTag = new ConcurrentHashMap<>();
+
+    /**
+     * A load of {@code key} that is running; a change to the entity it is keyed by marks it overtaken.
+     */
+    static final class Loading {
+
+        private final Cache cache;
+
+        private final CacheKey key;
+
+        private final Tag tag;
+
+        private volatile boolean overtaken;
+
+        private Loading(Cache cache, CacheKey key, Tag tag) {
+            this.cache = cache;
+            this.key = key;
+            this.tag = tag;
+        }
+
+        boolean isOvertaken() {
+            return overtaken;
+        }
+    }
+
+    /**
+     * Records the dependencies of a value that was just stored in {@code cache}.
+     */
+    public void register(Cache cache, CacheKey key, Object value) {
+        caches.putIfAbsent(cache.getName(), cache);
+        forget(key);
+
+        Set<Tag> tags = new HashSet<>();
+        collectEntityTags(value, tags);
+        switch (key.kind()) {
+            case USER_BY_EMAIL, USER_VIEW_BY_EMAIL -> tags.add(new Tag(TagType.EMAIL, key.value()));
+            case PRODUCTS_BY_USER, PRODUCT_VIEWS_BY_USER -> tags.add(new Tag(TagType.OWNER, key.value()));
+            // a missing row contributes no entity, but inserting it must still evict the entry
+            case USER_BY_ID, USER_VIEW_BY_ID -> {
+                if (value == null) {
+                    tags.add(new Tag(TagType.USER, key.value()));
+                }
+            }
+            case PRODUCT_BY_ID, PRODUCT_VIEW_BY_ID -> {
+                if (value == null) {
+                    tags.add(new Tag(TagType.PRODUCT, key.value()));
+                }
+            }
+            default -> {
+            }
+        }
+
+        tagsByKey.put(key, tags);
+        tags.forEach(tag -> keysByTag.computeIfAbsent(tag, t -> ConcurrentHashMap.newKeySet()).add(key));
+    }
+
+    /**
+     * Tracks a load of {@code key} from before it reads the database until {@link #loaded}, so a change
+     * committed meanwhile evicts the key even though the value's dependencies are not registered yet.
+     */
+    Loading loading(Cache cache, CacheKey key) {
+        Loading loading = new Loading(cache, key, ownTag(key));
+        loadingByTag.computeIfAbsent(loading.tag, t -> ConcurrentHashMap.newKeySet()).add(loading);
+        return loading;
+    }
+
+    void loaded(Loading loading) {
+        loadingByTag.computeIfPresent(loading.tag, (t, loads) -> {
+            loads.remove(loading);
+            return loads.isEmpty() ? null : loads;
+        });
+    }
+
+    /**
+     * Records the dependencies of a value that replaced an entry without passing through the Spring
+     * cache, such as a background refresh.
+     */
+    public void reregister(CacheKey key, Object value) {
+        Cache cache = caches.get(key.kind().cacheName());
+        if (cache != null) {
+            register(cache, key, value);
+        }
+    }
+
+    /**
+     * Drops the bookkeeping of an entry that has left its cache.
+     */
+    public void forget(Object key) {
+        if (!(key instanceof CacheKey cacheKey)) {
+            return;
+        }
+        Set<Tag> tags = tagsByKey.remove(cacheKey);
+        if (tags != null) {
+            tags.forEach(tag -> keysByTag.computeIfPresent(tag, (t, keys) -> {
+                keys.remove(cacheKey);
+                return keys.isEmpty() ? null : keys;
+            }));
+        }
+    }
+
+    public void forgetAll(String cacheName) {
+        tagsByKey.keySet().stream()
+            .filter(key -> key.kind().cacheName().equals(cacheName))
+            .toList()
+            .forEach(this::forget);
+    }
+
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        overtakeLoads(new Tag(TagType.USER, event.id()));
+        overtakeLoads(new Tag(TagType.EMAIL, event.email()));
+        if (event.deleted()) {
+            overtakeLoads(new Tag(TagType.OWNER, event.id()));
+        }
+        Set<CacheKey> affected = new HashSet<>();
+        addTagged(new Tag(TagType.USER, event.id()), affected);
+        addTagged(new Tag(TagType.EMAIL, event.email()), affected);
+        if (event.deleted()) {
+            addTagged(new Tag(TagType.OWNER, event.id()), affected);
+        }
+        evict(affected);
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        overtakeLoads(new Tag(TagType.PRODUCT, event.id()));
+        overtakeLoads(new Tag(TagType.OWNER, event.userId()));
+        Set<CacheKey> affected = new HashSet<>();
+        addTagged(new Tag(TagType.PRODUCT, event.id()), affected);
+        if (!event.deleted() && event.userId() != null) {
+            addTagged(new Tag(TagType.OWNER, event.userId()), affected);
+        }
+        evict(affected);
+    }
+
+    // evicting also tells a single-flight load of the key not to store what it read
+    private void overtakeLoads(Tag tag) {
+        Set<Loading> loads = loadingByTag.get(tag);
+        if (loads == null) {
+            return;
+        }
+        for (Loading loading : loads) {
+            loading.overtaken = true;
+            loading.cache.evict(loading.key);
+        }
+    }
+
+    private void evict(Set<CacheKey> keys) {
+        for (CacheKey key : keys) {
+            Cache cache = caches.get(key.kind().cacheName());
+            if (cache != null) {
+                cache.evict(key);
+            }
+            forget(key);
+        }
+        if (!keys.isEmpty()) {
+            log.debug("Evicted dependent cache entries: {}", keys);
+        }
+    }
+
+    private void addTagged(Tag tag, Set<CacheKey> into) {
+        Set<CacheKey> keys = keysByTag.get(tag);
+        if (keys != null) {
+            into.addAll(keys);
+        }
+    }
+
+    private static void collectEntityTags(Object value, Set<Tag> tags) {
+        if (value instanceof Users user) {
+            tags.add(new Tag(TagType.USER, user.getId()));
+        }
+        else if (value instanceof Product product) {
+            tags.add(new Tag(TagType.PRODUCT, product.getId()));
+        }
+        else if (value instanceof UserView user) {
+            tags.add(new Tag(TagType.USER, user.id()));
+        }
+        else if (value instanceof ProductView product) {
+            tags.add(new Tag(TagType.PRODUCT, product.id()));
+        }
+        else if (value instanceof Collection<?> collection) {
+            collection.forEach(element -> collectEntityTags(element, tags));
+        }
+    }
+
+    private static Tag ownTag(CacheKey key) {
+        return switch (key.kind()) {
+            case USER_BY_ID, USER_VIEW_BY_ID -> new Tag(TagType.USER, key.value());
+            case USER_BY_EMAIL, USER_VIEW_BY_EMAIL -> new Tag(TagType.EMAIL, key.value());
+            case PRODUCT_BY_ID, PRODUCT_VIEW_BY_ID -> new Tag(TagType.PRODUCT, key.value());
+            case PRODUCTS_BY_USER, PRODUCT_VIEWS_BY_USER -> new Tag(TagType.OWNER, key.value());
+        };
+    }
+
+    private enum TagType {
+        USER, EMAIL, PRODUCT, OWNER
+    }
+
+    private record Tag(TagType type, Object value) {
+    }
+}
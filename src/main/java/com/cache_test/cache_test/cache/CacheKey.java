@@ -0,0 +1,79 @@
+package com.cache_test.cache_test.cache;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Cache key made of the query kind and its argument. Keys of different kinds never compare equal,
+ * even when their arguments do, and the hash is computed once at construction.
+ */
+public final class CacheKey implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final QueryKind kind;
+
+    private final Object value;
+
+    private final transient int hash;
+
+    private CacheKey(QueryKind kind, Object value) {
+        this.kind = kind;
+        this.value = value;
+        this.hash = 31 * kind.hashCode() + Objects.hashCode(value);
+    }
+
+    public static CacheKey of(QueryKind kind, Object value) {
+        Objects.requireNonNull(kind, "kind");
+        if (value instanceof BigDecimal decimal) {
+            // 100 and 100.00 select the same rows and must share an entry
+            value = decimal.stripTrailingZeros();
+        }
+        return new CacheKey(kind, value);
+    }
+
+    public static CacheKey userById(Long id) {
+        return new CacheKey(QueryKind.USER_BY_ID, id);
+    }
+
+    public static CacheKey productById(Long id) {
+        return new CacheKey(QueryKind.PRODUCT_BY_ID, id);
+    }
+
+    public QueryKind kind() {
+        return kind;
+    }
+
+    public Object value() {
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof CacheKey other
+            && hash == other.hash
+            && kind == other.kind
+            && Objects.equals(value, other.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return kind.name() + ':' + value;
+    }
+
+    @Serial
+    private Object readResolve() {
+        return new CacheKey(kind, value);
+    }
+}
@@ -0,0 +1,195 @@
+package com.cache_test.cache_test.cache;
+
+import com.cache_test.cache_test.config.CacheProperties;
+import com.cache_test.cache_test.repo.ProductService;
+import com.cache_test.cache_test.repo.UserService;
+import com.github.benmanes.caffeine.cache.Cache;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records the hottest keys of every Caffeine-backed Spring cache to a local file while the application
+ * runs, and preloads them on the next start. Preloading goes through the services, so it fills the L2
+ * regions too. It runs as the last {@link ApplicationRunner}, which the application has to finish before
+ * it reports readiness, within the configured time and concurrency budget; keys it did not reach stay cold.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@RequiredArgsConstructor
+@Slf4j
+public class CacheWarmer implements ApplicationRunner {
+
+    private final CacheManager cacheManager;
+
+    private final CacheProperties cacheProperties;
+
+    private final UserService userService;
+
+    private final ProductService productService;
+
+    private final TaskScheduler taskScheduler;
+
+    private final KeyActivity activity;
+
+    @PostConstruct
+    void scheduleSaving() {
+        CacheProperties.Warmup warmup = cacheProperties.getWarmup();
+        if (warmup.isEnabled()) {
+            taskScheduler.scheduleWithFixedDelay(
+                this::saveProfile, Instant.now().plus(warmup.getSaveInterval()), warmup.getSaveInterval()
+            );
+        }
+    }
+
+    @PreDestroy
+    void saveOnShutdown() {
+        if (cacheProperties.getWarmup().isEnabled()) {
+            saveProfile();
+        }
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (cacheProperties.getWarmup().isEnabled()) {
+            warmUp();
+        }
+    }
+
+    /**
+     * Writes the hottest keys of each cache to the profile file, hottest first.
+     */
+    public void saveProfile() {
+        int limit = cacheProperties.getWarmup().getKeysPerCache();
+        List<CacheKey> keys = new ArrayList<>();
+        for (String name : cacheManager.getCacheNames()) {
+            var cache = cacheManager.getCache(name);
+            if (cache != null && cache.getNativeCache() instanceof Cache<?, ?> c) {
+                c.policy().eviction().ifPresent(eviction -> addCacheKeys(eviction.hottest(limit).keySet(), keys));
+            }
+        }
+        Path file = cacheProperties.getWarmup().getProfileFile();
+        try {
+            AccessProfile.write(file, keys);
+            log.debug("Saved {} hot cache keys to {}", keys.size(), file);
+        }
+        catch (IOException e) {
+            log.warn("Could not save the cache access profile to {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Preloads the keys of the profile file in parallel batches until they are done or the time budget
+     * runs out.
+     *
+     * @return the number of keys loaded
+     */
+    public int warmUp() {
+        CacheProperties.Warmup warmup = cacheProperties.getWarmup();
+        Path file = warmup.getProfileFile();
+        List<CacheKey> keys;
+        try {
+            if (!Files.exists(file)) {
+                log.info("No cache access profile at {}, starting cold", file);
+                return 0;
+            }
+            keys = AccessProfile.read(file);
+        }
+        catch (IOException e) {
+            log.warn("Could not read the cache access profile {}: {}", file, e.getMessage());
+            return 0;
+        }
+
+        Map<QueryKind, List<CacheKey>> keysByKind = new EnumMap<>(QueryKind.class);
+        for (CacheKey key : keys) {
+            keysByKind.computeIfAbsent(key.kind(), k -> new ArrayList<>()).add(key);
+        }
+
+        long start = System.nanoTime();
+        AtomicInteger loaded = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(
+            warmup.getConcurrency(), new CustomizableThreadFactory("cache-warmup-")
+        );
+        try {
+            keysByKind.forEach((kind, ofKind) -> {
+                for (int from = 0; from < ofKind.size(); from += warmup.getBatchSize()) {
+                    List<CacheKey> batch = ofKind.subList(from, Math.min(from + warmup.getBatchSize(), ofKind.size()));
+                    pool.execute(() -> {
+                        // preloading is not reading: it would make every profiled key look hot
+                        if (activity.untracked(() -> load(kind, batch))) {
+                            loaded.addAndGet(batch.size());
+                        }
+                    });
+                }
+            });
+            pool.shutdown();
+            if (!pool.awaitTermination(warmup.getTimeBudget().toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("Cache warm-up ran out of its {} budget", warmup.getTimeBudget());
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        log.info("Warmed up {} of {} cache keys in {} ms",
+            loaded.get(), keys.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return loaded.get();
+    }
+
+    private boolean load(QueryKind kind, List<CacheKey> keys) {
+        try {
+            switch (kind) {
+                case USER_BY_ID -> userService.findAllById(longValues(keys));
+                case PRODUCT_BY_ID -> productService.findAllById(longValues(keys));
+                case USER_BY_EMAIL -> keys.forEach(key -> userService.findByEmail((String) key.value()));
+                case PRODUCTS_BY_USER -> keys.forEach(key -> productService.findByUserId((Long) key.value()));
+                case USER_VIEW_BY_ID -> keys.forEach(key -> userService.findViewById((Long) key.value()));
+                case USER_VIEW_BY_EMAIL -> keys.forEach(key -> userService.findViewByEmail((String) key.value()));
+                case PRODUCT_VIEW_BY_ID -> keys.forEach(key -> productService.findViewById((Long) key.value()));
+                case PRODUCT_VIEWS_BY_USER ->
+                    keys.forEach(key -> productService.findViewsByUserId((Long) key.value()));
+            }
+            return true;
+        }
+        catch (RuntimeException e) {
+            log.warn("Cache warm-up of {} keys failed: {}", kind, e.getMessage());
+            return false;
+        }
+    }
+
+    private static List<Long> longValues(List<CacheKey> keys) {
+        return keys.stream().map(key -> (Long) key.value()).toList();
+    }
+
+    private static void addCacheKeys(Iterable<?> keys, List<CacheKey> into) {
+        for (Object key : keys) {
+            if (key instanceof CacheKey cacheKey) {
+                into.add(cacheKey);
+            }
+        }
+    }
+}
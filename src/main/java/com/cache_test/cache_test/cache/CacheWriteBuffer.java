@@ -0,0 +1,136 @@
+package com.cache_test.cache_test.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The cache writes of one transaction, coalesced per key and applied in {@code afterCompletion}: all of
+ * them on commit, none on rollback, and only evictions and clears, with puts turned into evictions, when the
+ * outcome is unknown. Bound as a transaction resource, so a suspended transaction keeps its own buffer.
+ */
+final class CacheWriteBuffer implements TransactionSynchronization {
+
+    private static final Object RESOURCE_KEY = CacheWriteBuffer.class;
+
+    private static final Object ALL_KEYS = new Object();
+
+    sealed interface Write permits Put, Evict {
+    }
+
+    record Put(Object value) implements Write {
+    }
+
+    record Evict() implements Write {
+    }
+
+    private record Target(Cache cache, Object key) {
+    }
+
+    private final Map<Target, Write> writes = new LinkedHashMap<>();
+
+    /**
+     * @return the buffer of the current transaction, or {@code null} when writes should be applied now
+     */
+    static CacheWriteBuffer current() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        CacheWriteBuffer buffer = existing();
+        if (buffer == null) {
+            buffer = new CacheWriteBuffer();
+            TransactionSynchronizationManager.bindResource(RESOURCE_KEY, buffer);
+            TransactionSynchronizationManager.registerSynchronization(buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Like {@link #current()}, without starting a buffer; for reads.
+     */
+    static CacheWriteBuffer existing() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        CacheWriteBuffer buffer = (CacheWriteBuffer) TransactionSynchronizationManager.getResource(RESOURCE_KEY);
+        if (buffer != null && !TransactionSynchronizationManager.getSynchronizations().contains(buffer)) {
+            // left bound by a transaction whose synchronizations never completed; its writes are not ours
+            TransactionSynchronizationManager.unbindResource(RESOURCE_KEY);
+            return null;
+        }
+        return buffer;
+    }
+
+    void put(Cache cache, Object key, Object value) {
+        add(new Target(cache, key), new Put(value));
+    }
+
+    void evict(Cache cache, Object key) {
+        add(new Target(cache, key), new Evict());
+    }
+
+    void clear(Cache cache) {
+        writes.keySet().removeIf(target -> target.cache() == cache);
+        writes.put(new Target(cache, ALL_KEYS), new Evict());
+    }
+
+    /**
+     * @return what this transaction has written to {@code key} so far, or {@code null} if nothing
+     */
+    Write pending(Cache cache, Object key) {
+        Write write = writes.get(new Target(cache, key));
+        return write != null ? write : writes.get(new Target(cache, ALL_KEYS));
+    }
+
+    private void add(Target target, Write write) {
+        // re-inserted at the end, so writes are applied in the order they were last made
+        writes.remove(target);
+        writes.put(target, write);
+    }
+
+    @Override
+    public void suspend() {
+        TransactionSynchronizationManager.unbindResourceIfPossible(RESOURCE_KEY);
+    }
+
+    @Override
+    public void resume() {
+        TransactionSynchronizationManager.bindResource(RESOURCE_KEY, this);
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+        if (TransactionSynchronizationManager.getResource(RESOURCE_KEY) == this) {
+            TransactionSynchronizationManager.unbindResource(RESOURCE_KEY);
+        }
+        List<Map.Entry<Target, Write>> batch = new ArrayList<>(writes.entrySet());
+        writes.clear();
+        if (status == STATUS_ROLLED_BACK) {
+            return;
+        }
+        for (Map.Entry<Target, Write> entry : batch) {
+            Cache cache = entry.getKey().cache();
+            Object key = entry.getKey().key();
+            if (entry.getValue() instanceof Put put) {
+                // an unknown outcome may still have committed: evict rather than cache state that may not exist
+                if (status == STATUS_COMMITTED) {
+                    cache.put(key, put.value());
+                }
+                else {
+                    cache.evict(key);
+                }
+            }
+            else if (key == ALL_KEYS) {
+                cache.clear();
+            }
+            else {
+                cache.evict(key);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.cache_test.cache_test.cache;
+
+import com.cache_test.cache_test.metrics.CacheMetrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Reports every value written under a {@link CacheKey} to the {@link CacheDependencyIndex} and counts
+ * explicit puts, which the cache statistics do not see.
+ */
+@RequiredArgsConstructor
+public class DependencyTrackingCache implements Cache {
+
+    private final Cache delegate;
+
+    private final CacheDependencyIndex index;
+
+    private final CacheMetrics metrics;
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return delegate.get(key);
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        return delegate.get(key, type);
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        if (!(key instanceof CacheKey cacheKey)) {
+            return delegate.get(key, valueLoader);
+        }
+        CacheDependencyIndex.Loading[] loading = new CacheDependencyIndex.Loading[1];
+        T value = delegate.get(key, () -> {
+            loading[0] = index.loading(delegate, cacheKey);
+            try {
+                T loaded = valueLoader.call();
+                track(key, loaded);
+                return loaded;
+            }
+            finally {
+                index.loaded(loading[0]);
+            }
+        });
+        // a cache without single-flight loads stores the value regardless; take it out again
+        if (loading[0] != null && loading[0].isOvertaken()) {
+            evict(key);
+        }
+        return value;
+    }
+
+    @Override
+    public CompletableFuture<?> retrieve(Object key) {
+        return delegate.retrieve(key);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> retrieve(Object key, Supplier<CompletableFuture<T>> valueLoader) {
+        return delegate.retrieve(key, () -> valueLoader.get().thenApply(value -> {
+            track(key, value);
+            return value;
+        }));
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        delegate.put(key, value);
+        metrics.recordPut(getName());
+        track(key, value);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = delegate.putIfAbsent(key, value);
+        if (existing == null) {
+            metrics.recordPut(getName());
+            track(key, value);
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        delegate.evict(key);
+        index.forget(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        boolean present = delegate.evictIfPresent(key);
+        index.forget(key);
+        return present;
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+        index.forgetAll(getName());
+    }
+
+    @Override
+    public boolean invalidate() {
+        boolean hadEntries = delegate.invalidate();
+        index.forgetAll(getName());
+        return hadEntries;
+    }
+
+    private void track(Object key, Object value) {
+        if (key instanceof CacheKey cacheKey) {
+            index.register(delegate, cacheKey, value);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.cache_test.cache_test.cache;
+
+import com.cache_test.cache_test.metrics.CacheMetrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wraps the caches of another {@link CacheManager} in {@link DependencyTrackingCache}s, behind an
+ * {@link AfterCommitCache} so that writes made in a transaction are tracked when they are applied.
+ */
+@RequiredArgsConstructor
+public class DependencyTrackingCacheManager implements CacheManager {
+
+    private final CacheManager delegate;
+
+    private final CacheDependencyIndex index;
+
+    private final CacheMetrics metrics;
+
+    private final Map<String, Cache> decorated = new ConcurrentHashMap<>();
+
+    @Override
+    public Cache getCache(String name) {
+        Cache cache = decorated.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache target = delegate.getCache(name);
+        if (target == null) {
+            return null;
+        }
+        return decorated.computeIfAbsent(
+            name, n -> new AfterCommitCache(new DependencyTrackingCache(target, index, metrics))
+        );
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return delegate.getCacheNames();
+    }
+}
@@ -0,0 +1,293 @@
+package com.cache_test.cache_test.cache;
+
+import com.cache_test.cache_test.config.CacheProperties;
+import com.cache_test.cache_test.entity.Product;
+import com.cache_test.cache_test.entity.Users;
+import com.cache_test.cache_test.repo.ProductRepository;
+import com.cache_test.cache_test.repo.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Bloom filters of the existing user ids, user emails and product ids, so lookups of keys that cannot
+ * exist skip the query. Built before readiness and rebuilt on a schedule; rows written in between are added
+ * from Hibernate events, bulk statements and the invalidation bus, so without the bus enable this on a single
+ * instance only. Until the first build, every key might exist.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+@RequiredArgsConstructor
+@Slf4j
+public class ExistenceFilter implements ApplicationRunner, PostInsertEventListener, PostUpdateEventListener {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final UserRepository userRepository;
+
+    private final ProductRepository productRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TaskScheduler taskScheduler;
+
+    private final CacheProperties cacheProperties;
+
+    private final MeterRegistry registry;
+
+    // null until the first build
+    private volatile Filters current;
+
+    // receives the writes made while a rebuild scans the tables
+    private volatile Filters building;
+
+    // the adds of the last replay window, oldest first
+    private final Queue<RecentAdd> recentAdds = new ConcurrentLinkedQueue<>();
+
+    // System.nanoTime() when the running rebuild started, Long.MAX_VALUE when none runs
+    private volatile long rebuildStartedAt = Long.MAX_VALUE;
+
+    private Counter userRejections;
+
+    private Counter productRejections;
+
+    private record Filters(BloomFilter userIds, BloomFilter emails, BloomFilter productIds) {
+
+        static Filters create(long expectedInsertions, double falsePositiveRate) {
+            return new Filters(
+                new BloomFilter(expectedInsertions, falsePositiveRate),
+                new BloomFilter(expectedInsertions, falsePositiveRate),
+                new BloomFilter(expectedInsertions, falsePositiveRate)
+            );
+        }
+
+        void addUser(Long id, String email) {
+            if (id != null) {
+                userIds.add(id);
+            }
+            if (email != null) {
+                emails.add(email);
+            }
+        }
+    }
+
+    private record RecentAdd(long at, Long userId, String email, Long productId) {
+
+        void replay(Filters filters) {
+            filters.addUser(userId, email);
+            if (productId != null) {
+                filters.productIds().add(productId);
+            }
+        }
+    }
+
+    @PostConstruct
+    void start() {
+        CacheProperties.Existence existence = cacheProperties.getExistence();
+        if (!existence.isEnabled()) {
+            return;
+        }
+        userRejections = Counter.builder("existence.filter.rejections").tag("entity", "users").register(registry);
+        productRejections = Counter.builder("existence.filter.rejections").tag("entity", "product")
+            .register(registry);
+        EventListenerRegistry listeners = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+            .getServiceRegistry()
+            .getService(EventListenerRegistry.class);
+        listeners.appendListeners(EventType.POST_INSERT, this);
+        listeners.appendListeners(EventType.POST_UPDATE, this);
+        taskScheduler.scheduleWithFixedDelay(
+            this::rebuildQuietly, Instant.now().plus(existence.getRebuildInterval()), existence.getRebuildInterval()
+        );
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (cacheProperties.getExistence().isEnabled()) {
+            rebuildQuietly();
+        }
+    }
+
+    public boolean mightContainUser(Long id) {
+        Filters filters = current;
+        if (filters == null || id == null || filters.userIds().mightContain(id)) {
+            return true;
+        }
+        userRejections.increment();
+        return false;
+    }
+
+    public boolean mightContainEmail(String email) {
+        Filters filters = current;
+        if (filters == null || email == null || filters.emails().mightContain(email)) {
+            return true;
+        }
+        userRejections.increment();
+        return false;
+    }
+
+    public boolean mightContainProduct(Long id) {
+        Filters filters = current;
+        if (filters == null || id == null || filters.productIds().mightContain(id)) {
+            return true;
+        }
+        productRejections.increment();
+        return false;
+    }
+
+    /**
+     * For writes that raise no Hibernate event; call before the statement runs.
+     */
+    public void addUser(Long id, String email) {
+        remember(new RecentAdd(System.nanoTime(), id, email, null));
+        forEachFilter(filters -> filters.addUser(id, email));
+    }
+
+    public void addProduct(Long id) {
+        if (id != null) {
+            remember(new RecentAdd(System.nanoTime(), null, null, id));
+            forEachFilter(filters -> filters.productIds().add(id));
+        }
+    }
+
+    /**
+     * Replaces the filters with ones built from the current rows, sized for at least twice as many.
+     */
+    public void rebuild() {
+        CacheProperties.Existence existence = cacheProperties.getExistence();
+        long rows = Math.max(userRepository.count(), productRepository.count());
+        Filters next = Filters.create(
+            Math.max(existence.getExpectedInsertions(), 2 * rows), existence.getFalsePositiveRate()
+        );
+        long startedAt = System.nanoTime();
+        rebuildStartedAt = startedAt;
+        building = next;
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<Object[]> users = userRepository.streamIdsAndEmails()) {
+                    users.forEach(row -> next.addUser((Long) row[0], (String) row[1]));
+                }
+                try (Stream<Long> products = productRepository.streamIds()) {
+                    products.forEach(id -> next.productIds().add(id));
+                }
+            });
+            // adds from before building was set whose rows the scan may not have seen yet
+            long since = startedAt - existence.getReplayWindow().toNanos();
+            recentAdds.stream().filter(add -> add.at() - since >= 0).forEach(add -> add.replay(next));
+            current = next;
+            log.info("Built existence filters for up to {} rows", rows);
+        }
+        finally {
+            building = null;
+            rebuildStartedAt = Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * For when inserts may have been missed: until a rebuild, started in the background, has finished,
+     * every key might exist.
+     */
+    public void invalidate() {
+        if (!cacheProperties.getExistence().isEnabled()) {
+            return;
+        }
+        current = null;
+        taskScheduler.schedule(this::rebuildQuietly, Instant.now());
+    }
+
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        if (!event.deleted()) {
+            addUser(event.id(), event.email());
+        }
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        if (!event.deleted()) {
+            addProduct(event.id());
+        }
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        add(event.getEntity());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        add(event.getEntity());
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    private void add(Object entity) {
+        if (entity instanceof Users user) {
+            addUser(user.getId(), user.getEmail());
+        }
+        else if (entity instanceof Product product) {
+            addProduct(product.getId());
+        }
+    }
+
+    private void remember(RecentAdd add) {
+        CacheProperties.Existence existence = cacheProperties.getExistence();
+        if (!existence.isEnabled()) {
+            return;
+        }
+        recentAdds.add(add);
+        // a running rebuild still needs the adds of the window before it started
+        long cutoff = Math.min(add.at(), rebuildStartedAt) - existence.getReplayWindow().toNanos();
+        RecentAdd oldest;
+        while ((oldest = recentAdds.peek()) != null && oldest.at() - cutoff < 0) {
+            recentAdds.remove(oldest);
+        }
+    }
+
+    private void forEachFilter(Consumer<Filters> action) {
+        Filters filters = current;
+        if (filters != null) {
+            action.accept(filters);
+        }
+        filters = building;
+        if (filters != null) {
+            action.accept(filters);
+        }
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        }
+        catch (RuntimeException e) {
+            log.warn("Could not rebuild the existence filters, keeping the old ones: {}", e.getMessage());
+        }
+    }
+}
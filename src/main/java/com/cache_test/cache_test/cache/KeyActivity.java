@@ -0,0 +1,142 @@
+package com.cache_test.cache_test.cache;
+
+import com.cache_test.cache_test.config.CacheProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Recent reads and writes per entity, behind {@link AdaptiveExpiry}: the cache hits of callers, not of
+ * warm-up or refreshes, and committed changes. Both counts are halved every
+ * {@code app.cache.activity.half-life}.
+ */
+@Component
+@RequiredArgsConstructor
+public class KeyActivity {
+
+    private final CacheProperties cacheProperties;
+
+    private final TaskScheduler taskScheduler;
+
+    private Cache<Subject, Counts> counts;
+
+    // set while lookups run on behalf of the cache itself, such as warm-up, which are not caller reads
+    private final ThreadLocal<Boolean> ownLookups = ThreadLocal.withInitial(() -> false);
+
+    private record Subject(String type, Object value) {
+    }
+
+    private static final class Counts {
+
+        final LongAdder reads = new LongAdder();
+
+        final LongAdder writes = new LongAdder();
+    }
+
+    @PostConstruct
+    void start() {
+        CacheProperties.Activity activity = cacheProperties.getActivity();
+        counts = Caffeine.newBuilder().maximumSize(activity.getMaximumSize()).build();
+        taskScheduler.scheduleAtFixedRate(
+            this::decay, Instant.now().plus(activity.getHalfLife()), activity.getHalfLife()
+        );
+    }
+
+    public void recordRead(Object key) {
+        if (ownLookups.get()) {
+            return;
+        }
+        Subject subject = subject(key);
+        if (subject != null) {
+            counts.get(subject, s -> new Counts()).reads.increment();
+        }
+    }
+
+    /**
+     * Runs {@code task} without recording the reads it makes on this thread.
+     */
+    public <T> T untracked(Supplier<T> task) {
+        ownLookups.set(true);
+        try {
+            return task.get();
+        }
+        finally {
+            ownLookups.remove();
+        }
+    }
+
+    /**
+     * @return recent reads of the entity behind {@code key}
+     */
+    public long reads(Object key) {
+        Counts recorded = recorded(key);
+        return recorded != null ? recorded.reads.sum() : 0;
+    }
+
+    /**
+     * @return recent committed writes of the entity behind {@code key}
+     */
+    public long writes(Object key) {
+        Counts recorded = recorded(key);
+        return recorded != null ? recorded.writes.sum() : 0;
+    }
+
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        recordWrite(new Subject("user", event.id()));
+        if (event.email() != null) {
+            recordWrite(new Subject("email", event.email()));
+        }
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        recordWrite(new Subject("product", event.id()));
+        if (event.userId() != null) {
+            recordWrite(new Subject("owner", event.userId()));
+        }
+    }
+
+    void decay() {
+        counts.asMap().values().forEach(recorded -> {
+            halve(recorded.reads);
+            halve(recorded.writes);
+        });
+        counts.asMap().values().removeIf(recorded -> recorded.reads.sum() == 0 && recorded.writes.sum() == 0);
+    }
+
+    private void recordWrite(Subject subject) {
+        counts.get(subject, s -> new Counts()).writes.increment();
+    }
+
+    private Counts recorded(Object key) {
+        Subject subject = subject(key);
+        return subject != null ? counts.getIfPresent(subject) : null;
+    }
+
+    // concurrent increments may land between the two calls; they are kept, only not halved this time
+    private static void halve(LongAdder adder) {
+        long current = adder.sum();
+        adder.add(-(current - current / 2));
+    }
+
+    private static Subject subject(Object key) {
+        if (!(key instanceof CacheKey cacheKey)) {
+            return null;
+        }
+        return switch (cacheKey.kind()) {
+            case USER_BY_ID, USER_VIEW_BY_ID -> new Subject("user", cacheKey.value());
+            case USER_BY_EMAIL, USER_VIEW_BY_EMAIL -> new Subject("email", cacheKey.value());
+            case PRODUCT_BY_ID, PRODUCT_VIEW_BY_ID -> new Subject("product", cacheKey.value());
+            case PRODUCTS_BY_USER, PRODUCT_VIEWS_BY_USER -> new Subject("owner", cacheKey.value());
+        };
+    }
+}
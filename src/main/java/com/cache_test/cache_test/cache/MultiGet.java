@@ -0,0 +1,72 @@
+package com.cache_test.cache_test.cache;
+
+import org.springframework.cache.Cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Cache-first lookup of many ids: hits come from the Spring cache, all misses are loaded with one call
+ * and written back, including ids that turned out not to exist.
+ */
+public final class MultiGet {
+
+    private MultiGet() {
+    }
+
+    /**
+     * @param loadMisses loads the given ids in one round trip; ids without a row are simply left out
+     * @return the entities found, in the order of {@code ids}, without duplicates
+     */
+    public static <T> List<T> load(
+        Cache cache, List<Long> ids, Function<Long, CacheKey> keyOf,
+        Function<List<Long>, List<T>> loadMisses, Function<T, Long> idOf
+    ) {
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        distinct.removeIf(Objects::isNull);
+
+        Map<Long, T> found = new HashMap<>();
+        List<Long> misses = new ArrayList<>();
+        for (Long id : distinct) {
+            Cache.ValueWrapper hit = cache.get(keyOf.apply(id));
+            if (hit == null) {
+                misses.add(id);
+            }
+            else if (hit.get() != null) {
+                @SuppressWarnings("unchecked")
+                T value = (T) hit.get();
+                found.put(id, value);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            Map<Long, T> loaded = new HashMap<>();
+            for (T value : loadMisses.apply(misses)) {
+                if (value != null) {
+                    loaded.put(idOf.apply(value), value);
+                }
+            }
+            for (Long id : misses) {
+                T value = loaded.get(id);
+                cache.put(keyOf.apply(id), value);
+                if (value != null) {
+                    found.put(id, value);
+                }
+            }
+        }
+
+        List<T> result = new ArrayList<>(found.size());
+        for (Long id : distinct) {
+            T value = found.get(id);
+            if (value != null) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+}
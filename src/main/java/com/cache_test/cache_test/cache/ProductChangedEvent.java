@@ -0,0 +1,9 @@
+package com.cache_test.cache_test.cache;
+
+import java.math.BigDecimal;
+
+/**
+ * Published after a transaction that inserted, updated or deleted a {@code Product} row has committed.
+ */
+public record ProductChangedEvent(Long id, Long userId, BigDecimal price, boolean deleted) {
+}
@@ -0,0 +1,37 @@
+package com.cache_test.cache_test.cache;
+
+import java.util.List;
+
+/**
+ * The query shapes whose results are cached. Each kind lives in exactly one Spring cache and
+ * lists the service methods whose arguments form its key, as {@code SimpleClassName.method}.
+ */
+public enum QueryKind {
+
+    USER_BY_ID("users", "UserService.findById", "UserService.deleteById"),
+    USER_BY_EMAIL("users", "UserService.findByEmail"),
+    USER_VIEW_BY_ID("users", "UserService.findViewById"),
+    USER_VIEW_BY_EMAIL("users", "UserService.findViewByEmail"),
+
+    PRODUCT_BY_ID("products", "ProductService.findById", "ProductService.deleteById"),
+    PRODUCTS_BY_USER("products", "ProductService.findByUserId"),
+    PRODUCT_VIEW_BY_ID("products", "ProductService.findViewById"),
+    PRODUCT_VIEWS_BY_USER("products", "ProductService.findViewsByUserId");
+
+    private final String cacheName;
+
+    private final List<String> methods;
+
+    QueryKind(String cacheName, String... methods) {
+        this.cacheName = cacheName;
+        this.methods = List.of(methods);
+    }
+
+    public String cacheName() {
+        return cacheName;
+    }
+
+    List<String> methods() {
+        return methods;
+    }
+}
@@ -0,0 +1,272 @@
+package com.cache_test.cache_test.cache;
+
+import com.cache_test.cache_test.config.CacheProperties;
+import com.cache_test.cache_test.entity.Product;
+import com.cache_test.cache_test.entity.Users;
+import com.cache_test.cache_test.repo.ProductRepository;
+import com.cache_test.cache_test.repo.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Answers {@code price > x} and {@code age > x} queries as slices of one list per entity sorted by that
+ * column. Committed changes are merged in once a query could see them; writes without a change event are
+ * picked up by the full reload an index gets once it is {@code app.cache.range-index.max-age} old.
+ */
+@Component
+@Slf4j
+public class RangeQueryCache {
+
+    private final SortedIndex<Product, BigDecimal> productsByPrice;
+
+    private final SortedIndex<Users, Integer> usersByAge;
+
+    public RangeQueryCache(
+        ProductRepository productRepository, UserRepository userRepository, CacheProperties cacheProperties
+    ) {
+        CacheProperties.RangeIndex settings = cacheProperties.getRangeIndex();
+        this.productsByPrice = new SortedIndex<>(
+            "product.price", Product::getId, Product::getPrice,
+            productRepository::findAllByOrderByPriceAsc, productRepository::findAllById, settings
+        );
+        this.usersByAge = new SortedIndex<>(
+            "users.age", Users::getId, Users::getAge,
+            userRepository::findByAgeNotNullOrderByAgeAsc, userRepository::findAllById, settings
+        );
+    }
+
+    public List<Product> findProductsWithPriceGreaterThan(BigDecimal price) {
+        return productsByPrice.greaterThan(price);
+    }
+
+    public List<Users> findUsersOlderThan(Integer age) {
+        return usersByAge.greaterThan(age);
+    }
+
+    /**
+     * Drops both indexes, for when changes may have been missed; the next query of each reloads it.
+     */
+    public void reset() {
+        productsByPrice.reset();
+        usersByAge.reset();
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        productsByPrice.changed(event.id(), event.deleted() ? null : event.price());
+    }
+
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        usersByAge.changed(event.id(), event.deleted() ? null : event.age());
+    }
+
+    private static final class SortedIndex<E, V extends Comparable<? super V>> {
+
+        /**
+         * Changes left pending while queries stay above them; past this many, the next query merges anyway.
+         */
+        private static final int MAX_PENDING = 1024;
+
+        private final String name;
+
+        private final Function<E, Long> idOf;
+
+        private final Function<E, V> valueOf;
+
+        private final Supplier<List<E>> loadAll;
+
+        private final Function<Iterable<Long>, List<E>> loadByIds;
+
+        private final CacheProperties.RangeIndex settings;
+
+        /**
+         * The highest value each pending change could affect, or empty when that is not known.
+         */
+        private final Map<Long, Optional<V>> changes = new ConcurrentHashMap<>();
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private volatile List<E> sorted;
+
+        private volatile Map<Long, V> valuesById = Map.of();
+
+        /**
+         * Odd while a load or merge runs, bumped again when it ends; changes compare it before and after
+         * reading {@link #valuesById}.
+         */
+        private volatile long merges;
+
+        private volatile long loadedAt;
+
+        SortedIndex(
+            String name, Function<E, Long> idOf, Function<E, V> valueOf,
+            Supplier<List<E>> loadAll, Function<Iterable<Long>, List<E>> loadByIds,
+            CacheProperties.RangeIndex settings
+        ) {
+            this.name = name;
+            this.idOf = idOf;
+            this.valueOf = valueOf;
+            this.loadAll = loadAll;
+            this.loadByIds = loadByIds;
+            this.settings = settings;
+        }
+
+        List<E> greaterThan(V threshold) {
+            List<E> rows = sorted;
+            if (rows == null || expired() || affects(threshold)) {
+                rows = current();
+            }
+            int low = 0;
+            int high = rows.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (valueOf.apply(rows.get(mid)).compareTo(threshold) <= 0) {
+                    low = mid + 1;
+                }
+                else {
+                    high = mid;
+                }
+            }
+            return rows.subList(low, rows.size());
+        }
+
+        /**
+         * @param value the row's new value, {@code null} if it was deleted or has none
+         */
+        void changed(Long id, V value) {
+            long generation = merges;
+            boolean running = (generation & 1) != 0;
+            // nothing loaded and no load running: the first load reads the row as it is now
+            if (sorted == null && !running) {
+                return;
+            }
+            V old = valuesById.get(id);
+            V highest = old == null || (value != null && value.compareTo(old) > 0) ? value : old;
+            if (running || sorted == null || merges != generation) {
+                // a load or merge overlapped, whose values may be newer than the old value read above
+                changes.put(id, Optional.empty());
+            }
+            else if (highest != null) {
+                changes.merge(id, Optional.of(highest), SortedIndex::higher);
+            }
+        }
+
+        void reset() {
+            lock.lock();
+            try {
+                sorted = null;
+                valuesById = Map.of();
+                changes.clear();
+                // a whole step, so a change racing with it records an unknown bound instead of none
+                merges += 2;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean affects(V threshold) {
+            if (changes.isEmpty()) {
+                return false;
+            }
+            if (changes.size() > MAX_PENDING) {
+                return true;
+            }
+            for (Optional<V> bound : changes.values()) {
+                if (bound.isEmpty() || bound.get().compareTo(threshold) > 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean expired() {
+            return System.nanoTime() - loadedAt > settings.getMaxAge().toNanos();
+        }
+
+        private List<E> current() {
+            lock.lock();
+            try {
+                if (sorted == null || expired()) {
+                    merges++;
+                    try {
+                        changes.clear();
+                        List<E> rows = List.copyOf(loadAll.get());
+                        valuesById = valuesById(rows);
+                        sorted = rows;
+                        loadedAt = System.nanoTime();
+                        log.info("Loaded {} range index with {} rows", name, rows.size());
+                    }
+                    finally {
+                        merges++;
+                    }
+                }
+                else if (!changes.isEmpty()) {
+                    merges++;
+                    try {
+                        List<E> rows = merge(sorted);
+                        valuesById = valuesById(rows);
+                        sorted = rows;
+                    }
+                    finally {
+                        merges++;
+                    }
+                }
+                return sorted;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        private Map<Long, V> valuesById(List<E> rows) {
+            Map<Long, V> values = new HashMap<>(rows.size() * 4 / 3 + 1);
+            for (E row : rows) {
+                values.put(idOf.apply(row), valueOf.apply(row));
+            }
+            return values;
+        }
+
+        private static <V extends Comparable<? super V>> Optional<V> higher(Optional<V> a, Optional<V> b) {
+            if (a.isEmpty() || b.isEmpty()) {
+                return Optional.empty();
+            }
+            return a.get().compareTo(b.get()) >= 0 ? a : b;
+        }
+
+        private List<E> merge(List<E> rows) {
+            Set<Long> ids = Set.copyOf(changes.keySet());
+            changes.keySet().removeAll(ids);
+
+            List<E> merged = new ArrayList<>(rows.size() + ids.size());
+            for (E row : rows) {
+                if (!ids.contains(idOf.apply(row))) {
+                    merged.add(row);
+                }
+            }
+            for (E row : loadByIds.apply(ids)) {
+                if (valueOf.apply(row) != null) {
+                    merged.add(row);
+                }
+            }
+            merged.sort(Comparator.comparing(valueOf));
+            log.debug("Merged {} changed rows into {} range index", ids.size(), name);
+            return List.copyOf(merged);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.cache_test.cache_test.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link CaffeineCache} whose native cache may have a loader for refresh-ahead only: a plain lookup never
+ * loads, so misses keep going through the cached method. Single-flight loads wait on a future rather than a
+ * bin lock, which would pin virtual threads, and are not cached when a write to their key overtakes them.
+ */
+public class RefreshAheadCaffeineCache extends CaffeineCache {
+
+    private final ConcurrentMap<Object, Load> loading = new ConcurrentHashMap<>();
+
+    private final StatsCounter stats;
+
+    private final Cache<Object, Object> negatives;
+
+    private final KeyActivity activity;
+
+    private static final class Load extends CompletableFuture<Object> {
+
+        volatile boolean overtaken;
+    }
+
+    public RefreshAheadCaffeineCache(
+        String name, Cache<Object, Object> cache, boolean allowNullValues, StatsCounter stats
+    ) {
+        this(name, cache, allowNullValues, stats, null);
+    }
+
+    /**
+     * @param negatives where {@code null} values go, or {@code null} to keep them in the main cache
+     */
+    public RefreshAheadCaffeineCache(
+        String name, Cache<Object, Object> cache, boolean allowNullValues, StatsCounter stats,
+        Cache<Object, Object> negatives
+    ) {
+        this(name, cache, allowNullValues, stats, negatives, null);
+    }
+
+    /**
+     * @param activity where hits are recorded as reads, or {@code null} when the cache is not adaptive
+     */
+    public RefreshAheadCaffeineCache(
+        String name, Cache<Object, Object> cache, boolean allowNullValues, StatsCounter stats,
+        Cache<Object, Object> negatives, KeyActivity activity
+    ) {
+        super(name, cache, allowNullValues);
+        this.stats = stats;
+        this.negatives = negatives;
+        this.activity = activity;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        Object value = getNativeCache().getIfPresent(key);
+        if (value == null && negatives != null) {
+            value = negatives.getIfPresent(key);
+        }
+        if (value != null && activity != null) {
+            activity.recordRead(key);
+        }
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        overtake(key);
+        store(key, value);
+    }
+
+    private void store(Object key, Object value) {
+        if (negatives == null) {
+            super.put(key, value);
+        }
+        else if (value == null) {
+            getNativeCache().invalidate(key);
+            negatives.put(key, toStoreValue(null));
+        }
+        else {
+            negatives.invalidate(key);
+            super.put(key, value);
+        }
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        overtake(key);
+        if (negatives == null) {
+            return super.putIfAbsent(key, value);
+        }
+        Object missing = negatives.asMap().get(key);
+        if (missing != null) {
+            return toValueWrapper(missing);
+        }
+        if (value == null) {
+            Object present = getNativeCache().asMap().get(key);
+            if (present != null) {
+                return toValueWrapper(present);
+            }
+            negatives.put(key, toStoreValue(null));
+            return null;
+        }
+        return super.putIfAbsent(key, value);
+    }
+
+    @Override
+    public void evict(Object key) {
+        overtake(key);
+        super.evict(key);
+        if (negatives != null) {
+            negatives.invalidate(key);
+        }
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        overtake(key);
+        boolean present = super.evictIfPresent(key);
+        return negatives != null ? negatives.asMap().remove(key) != null || present : present;
+    }
+
+    @Override
+    public void clear() {
+        loading.values().forEach(load -> load.overtaken = true);
+        super.clear();
+        if (negatives != null) {
+            negatives.invalidateAll();
+        }
+    }
+
+    @Override
+    public boolean invalidate() {
+        loading.values().forEach(load -> load.overtaken = true);
+        boolean hadEntries = super.invalidate();
+        if (negatives != null) {
+            hadEntries |= !negatives.asMap().isEmpty();
+            negatives.invalidateAll();
+        }
+        return hadEntries;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper hit = get(key);
+        if (hit != null) {
+            return (T) hit.get();
+        }
+
+        Load load = new Load();
+        Load running = loading.putIfAbsent(key, load);
+        if (running != null) {
+            try {
+                return (T) running.join();
+            }
+            catch (CompletionException ex) {
+                throw new ValueRetrievalException(key, valueLoader, ex.getCause());
+            }
+        }
+
+        long start = System.nanoTime();
+        try {
+            // a load that finished between the lookup and putIfAbsent has stored its value already;
+            // read through the map view, which does not count a second miss
+            Object stored = getNativeCache().asMap().get(key);
+            if (stored == null && negatives != null) {
+                stored = negatives.asMap().get(key);
+            }
+            T value;
+            if (stored != null) {
+                value = (T) fromStoreValue(stored);
+            }
+            else {
+                value = valueLoader.call();
+                if (!load.overtaken) {
+                    store(key, value);
+                    // overtaken while storing: the write may have landed first, so drop whichever is left
+                    if (load.overtaken) {
+                        super.evict(key);
+                        if (negatives != null) {
+                            negatives.invalidate(key);
+                        }
+                    }
+                }
+                stats.recordLoadSuccess(System.nanoTime() - start);
+            }
+            load.complete(value);
+            return value;
+        }
+        catch (Exception ex) {
+            stats.recordLoadFailure(System.nanoTime() - start);
+            load.completeExceptionally(ex);
+            throw new ValueRetrievalException(key, valueLoader, ex);
+        }
+        finally {
+            loading.remove(key, load);
+        }
+    }
+
+    private void overtake(Object key) {
+        Load load = loading.get(key);
+        if (load != null) {
+            load.overtaken = true;
+        }
+    }
+}
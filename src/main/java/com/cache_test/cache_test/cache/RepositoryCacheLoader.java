@@ -0,0 +1,51 @@
+package com.cache_test.cache_test.cache;
+
+import com.cache_test.cache_test.repo.ProductRepository;
+import com.cache_test.cache_test.repo.ProductWriteBehind;
+import com.cache_test.cache_test.repo.UserRepository;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Loads the value of a {@link CacheKey} from the repositories, or for a queued product from the
+ * write-behind queue, in the form the Spring caches store it. Used to refresh hot entries before they
+ * expire.
+ */
+@Component
+@RequiredArgsConstructor
+public class RepositoryCacheLoader implements CacheLoader<Object, Object> {
+
+    private final UserRepository userRepository;
+
+    private final ProductRepository productRepository;
+
+    private final CacheDependencyIndex index;
+
+    private final UnifiedEntityStore unifiedStore;
+
+    // the write-behind queue needs the cache manager, which needs this loader
+    private final ObjectProvider<ProductWriteBehind> writeBehind;
+
+    @Override
+    public Object load(Object key) {
+        if (!(key instanceof CacheKey cacheKey)) {
+            return null;
+        }
+        Object value = switch (cacheKey.kind()) {
+            case USER_BY_ID -> userRepository.findById((Long) cacheKey.value()).orElse(null);
+            case USER_BY_EMAIL -> userRepository.findByEmail((String) cacheKey.value()).orElse(null);
+            case PRODUCT_BY_ID -> writeBehind.getObject().pending((Long) cacheKey.value())
+                .or(() -> productRepository.findById((Long) cacheKey.value()))
+                .orElse(null);
+            case PRODUCTS_BY_USER -> productRepository.findByUserId((Long) cacheKey.value());
+            case USER_VIEW_BY_ID -> userRepository.findViewById((Long) cacheKey.value()).orElse(null);
+            case USER_VIEW_BY_EMAIL -> userRepository.findViewByEmail((String) cacheKey.value()).orElse(null);
+            case PRODUCT_VIEW_BY_ID -> productRepository.findViewById((Long) cacheKey.value()).orElse(null);
+            case PRODUCT_VIEWS_BY_USER -> productRepository.findViewsByUserId((Long) cacheKey.value());
+        };
+        index.reregister(cacheKey, value);
+        return unifiedStore.toStored(cacheKey, value);
+    }
+}
@@ -0,0 +1,41 @@
+package com.cache_test.cache_test.cache;
+
+import org.springframework.cache.interceptor.KeyGenerator;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds {@link CacheKey}s for the methods listed in {@link QueryKind}. The kind of each method is
+ * resolved once, so a cache lookup allocates only the key itself.
+ */
+public class TypedKeyGenerator implements KeyGenerator {
+
+    private static final Map<String, QueryKind> KINDS_BY_METHOD = new HashMap<>();
+
+    static {
+        for (QueryKind kind : QueryKind.values()) {
+            kind.methods().forEach(method -> KINDS_BY_METHOD.put(method, kind));
+        }
+    }
+
+    private final Map<Method, QueryKind> kinds = new ConcurrentHashMap<>();
+
+    @Override
+    public Object generate(Object target, Method method, Object... params) {
+        QueryKind kind = kinds.computeIfAbsent(method, TypedKeyGenerator::resolve);
+        return CacheKey.of(kind, params.length == 1 ? params[0] : Arrays.asList(params));
+    }
+
+    private static QueryKind resolve(Method method) {
+        String name = method.getDeclaringClass().getSimpleName() + '.' + method.getName();
+        QueryKind kind = KINDS_BY_METHOD.get(name);
+        if (kind == null) {
+            throw new IllegalStateException("No QueryKind is mapped to cached method " + name);
+        }
+        return kind;
+    }
+}
@@ -0,0 +1,150 @@
+package com.cache_test.cache_test.cache;
+
+import com.cache_test.cache_test.config.CacheProperties;
+import com.cache_test.cache_test.entity.Product;
+import com.cache_test.cache_test.entity.Users;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.stereotype.Component;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * With {@code app.cache.unified}, the Hibernate L2 regions are the only store of entity state: Spring
+ * cache entries of entity lookups keep the ids and resolve them through L2 on every hit. An entry Hibernate
+ * has invalidated or locked for a write resolves to nothing, which the cache reports as a miss.
+ */
+@Component
+@RequiredArgsConstructor
+public class UnifiedEntityStore {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final CacheProperties cacheProperties;
+
+    /**
+     * A cached entity, by id.
+     */
+    record EntityRef(Class<?> type, Object id) implements Serializable {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * A cached list of entities, by id, in list order.
+     */
+    record EntityRefs(Class<?> type, List<Object> ids) implements Serializable {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+    }
+
+    public boolean isEnabled() {
+        return cacheProperties.isUnified();
+    }
+
+    /**
+     * What the Spring cache should hold for {@code value}: a reference for entities and lists of them,
+     * the value itself otherwise.
+     */
+    public Object toStored(Object key, Object value) {
+        if (!isEnabled() || value == null || !(key instanceof CacheKey cacheKey)) {
+            return value;
+        }
+        return switch (cacheKey.kind()) {
+            case USER_BY_ID, USER_BY_EMAIL ->
+                value instanceof Users user ? new EntityRef(Users.class, user.getId()) : value;
+            case PRODUCT_BY_ID ->
+                value instanceof Product product ? new EntityRef(Product.class, product.getId()) : value;
+            case PRODUCTS_BY_USER -> value instanceof List<?> products ? productRefs(products, value) : value;
+            default -> value;
+        };
+    }
+
+    public boolean isReference(Object stored) {
+        return stored instanceof EntityRef || stored instanceof EntityRefs;
+    }
+
+    /**
+     * @return how many entities {@code stored} refers to, or -1 when it is not a reference
+     */
+    public static int referencedCount(Object stored) {
+        if (stored instanceof EntityRef) {
+            return 1;
+        }
+        return stored instanceof EntityRefs refs ? refs.ids().size() : -1;
+    }
+
+    /**
+     * Loads through the session of the current transaction or request when there is one, so a hit costs no
+     * session of its own; the entities come back managed by it, like any other load in that transaction.
+     * Presence in L2 is checked before the load and again after it: an entry evicted in between makes the
+     * load read the row instead, and that is reported as a miss rather than returned as a cache hit.
+     *
+     * @return the referenced entity or entities, or {@code null} when any of them has left its L2 region
+     */
+    public Object resolve(Object stored) {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        if (stored instanceof EntityRef ref) {
+            if (!inL2(sessionFactory, ref.type(), List.of(ref.id()))) {
+                return null;
+            }
+            Object entity = read(sessionFactory,
+                session -> session.byId(ref.type()).with(CacheMode.GET).load(ref.id()));
+            return entity != null && inL2(sessionFactory, ref.type(), List.of(ref.id())) ? entity : null;
+        }
+        if (stored instanceof EntityRefs refs) {
+            if (!inL2(sessionFactory, refs.type(), refs.ids())) {
+                return null;
+            }
+            List<?> entities = read(sessionFactory,
+                session -> session.byMultipleIds(refs.type()).with(CacheMode.GET).multiLoad(refs.ids()));
+            return entities.contains(null) || !inL2(sessionFactory, refs.type(), refs.ids())
+                ? null : new ArrayList<>(entities);
+        }
+        return stored;
+    }
+
+    private static boolean inL2(SessionFactory sessionFactory, Class<?> type, List<Object> ids) {
+        for (Object id : ids) {
+            if (!sessionFactory.getCache().containsEntity(type, id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private <T> T read(SessionFactory sessionFactory, Function<Session, T> load) {
+        EntityManager current = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+        if (current != null) {
+            return load.apply(current.unwrap(Session.class));
+        }
+        // no transaction or open-in-view session: a read-only one skips the snapshots kept for dirty checking
+        try (Session session = sessionFactory.openSession()) {
+            session.setDefaultReadOnly(true);
+            return load.apply(session);
+        }
+    }
+
+    private static Object productRefs(List<?> products, Object value) {
+        List<Object> ids = new ArrayList<>(products.size());
+        for (Object element : products) {
+            if (!(element instanceof Product product)) {
+                return value;
+            }
+            ids.add(product.getId());
+        }
+        return new EntityRefs(Product.class, ids.stream().filter(Objects::nonNull).toList());
+    }
+}
@@ -0,0 +1,125 @@
+package com.cache_test.cache_test.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Stores entity lookups as references into the Hibernate L2 regions, see {@link UnifiedEntityStore}; a
+ * reference whose entity has left L2 is dropped and reported as a miss. {@code app.cache.unified} is read
+ * on each write.
+ */
+@RequiredArgsConstructor
+public class UnifiedStoreCache implements Cache {
+
+    private final Cache delegate;
+
+    private final UnifiedEntityStore store;
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        ValueWrapper stored = delegate.get(key);
+        if (stored == null || !store.isReference(stored.get())) {
+            return stored;
+        }
+        Object resolved = store.resolve(stored.get());
+        if (resolved == null) {
+            delegate.evict(key);
+            return null;
+        }
+        return new SimpleValueWrapper(resolved);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper value = get(key);
+        if (value != null && type != null && value.get() != null && !type.isInstance(value.get())) {
+            throw new IllegalStateException(
+                "Cached value is not of required type [" + type.getName() + "]: " + value.get()
+            );
+        }
+        return value != null ? (T) value.get() : null;
+    }
+
+    /**
+     * One lookup of the delegate, so a miss is counted once. A hit on a reference that no longer resolves
+     * is dropped and loaded again through the delegate, which counts that second lookup as the miss it is.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object[] loaded = new Object[1];
+        boolean[] loadedHere = new boolean[1];
+        Callable<Object> load = () -> {
+            T value = valueLoader.call();
+            loaded[0] = value;
+            loadedHere[0] = true;
+            return store.toStored(key, value);
+        };
+        Object stored = delegate.get(key, load);
+        if (loadedHere[0]) {
+            return (T) loaded[0];
+        }
+        if (!store.isReference(stored)) {
+            return (T) stored;
+        }
+        // a hit, or another caller's load, whose entities were put into L2 by that load
+        Object resolved = store.resolve(stored);
+        if (resolved != null) {
+            return (T) resolved;
+        }
+        delegate.evict(key);
+        stored = delegate.get(key, load);
+        if (loadedHere[0]) {
+            return (T) loaded[0];
+        }
+        return store.isReference(stored) ? (T) store.resolve(stored) : (T) stored;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        delegate.put(key, store.toStored(key, value));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = delegate.putIfAbsent(key, store.toStored(key, value));
+        if (existing == null || !store.isReference(existing.get())) {
+            return existing;
+        }
+        return new SimpleValueWrapper(store.resolve(existing.get()));
+    }
+
+    @Override
+    public void evict(Object key) {
+        delegate.evict(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        return delegate.evictIfPresent(key);
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+
+    @Override
+    public boolean invalidate() {
+        return delegate.invalidate();
+    }
+}
@@ -0,0 +1,7 @@
+package com.cache_test.cache_test.cache;
+
+/**
+ * Published after a transaction that inserted, updated or deleted a {@code Users} row has committed.
+ */
+public record UserChangedEvent(Long id, String email, Integer age, boolean deleted) {
+}
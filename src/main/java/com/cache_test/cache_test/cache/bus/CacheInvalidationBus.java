@@ -0,0 +1,194 @@
+package com.cache_test.cache_test.cache.bus;
+
+import com.cache_test.cache_test.cache.ExistenceFilter;
+import com.cache_test.cache_test.cache.ProductChangedEvent;
+import com.cache_test.cache_test.cache.RangeQueryCache;
+import com.cache_test.cache_test.cache.UserChangedEvent;
+import com.cache_test.cache_test.entity.Product;
+import com.cache_test.cache_test.entity.Users;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the near caches of several instances coherent: committed changes are coalesced per entity and
+ * {@link #flush() flushed} to the peers once per interval, which evict their L2 entries and republish the
+ * changes as local events.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class CacheInvalidationBus {
+
+    private static final String USER_PRODUCTS = Users.class.getName() + ".products";
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final InvalidationTransport transport;
+
+    private final ObjectMapper objectMapper;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final CacheManager cacheManager;
+
+    private final RangeQueryCache rangeQueryCache;
+
+    private final ExistenceFilter existenceFilter;
+
+    private final Map<Long, UserChangedEvent> pendingUsers = new ConcurrentHashMap<>();
+
+    private final Map<Long, ProductChangedEvent> pendingProducts = new ConcurrentHashMap<>();
+
+    // set while a remote batch is republished locally, so it is not sent back out
+    private final ThreadLocal<Boolean> applyingRemote = ThreadLocal.withInitial(() -> false);
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void start() {
+        transport.subscribe(this::receive, this::clearAll);
+    }
+
+    public void stop() {
+        flush();
+        transport.close();
+    }
+
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        if (!applyingRemote.get()) {
+            pendingUsers.put(event.id(), event);
+        }
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        if (!applyingRemote.get()) {
+            pendingProducts.put(event.id(), event);
+        }
+    }
+
+    /**
+     * Sends the buffered changes, split into as many messages as the transport's size limit requires.
+     * Changes whose message could not be sent go back into the buffer for the next flush, unless a newer
+     * change of the same entity has arrived meanwhile.
+     */
+    public void flush() {
+        InvalidationBatch batch = new InvalidationBatch(nodeId, drain(pendingUsers), drain(pendingProducts));
+        if (batch.size() > 0) {
+            send(batch);
+        }
+    }
+
+    private void send(InvalidationBatch batch) {
+        String message = encode(batch);
+        if (message.getBytes(StandardCharsets.UTF_8).length <= transport.maxMessageBytes() || batch.size() == 1) {
+            if (!transport.publish(message)) {
+                batch.users().forEach(user -> pendingUsers.putIfAbsent(user.id(), user));
+                batch.products().forEach(product -> pendingProducts.putIfAbsent(product.id(), product));
+            }
+            return;
+        }
+        int users = batch.users().size() / 2;
+        int products = batch.products().size() / 2;
+        send(new InvalidationBatch(nodeId, batch.users().subList(0, users), batch.products().subList(0, products)));
+        send(new InvalidationBatch(
+            nodeId,
+            batch.users().subList(users, batch.users().size()),
+            batch.products().subList(products, batch.products().size())
+        ));
+    }
+
+    void receive(String message) {
+        InvalidationBatch batch;
+        try {
+            batch = objectMapper.readValue(message, InvalidationBatch.class);
+        }
+        catch (JsonProcessingException e) {
+            log.warn("Ignoring malformed cache invalidation message: {}", e.getMessage());
+            return;
+        }
+        if (!nodeId.equals(batch.origin())) {
+            apply(batch);
+        }
+    }
+
+    private void apply(InvalidationBatch batch) {
+        log.debug("Applying {} invalidations from {}", batch.size(), batch.origin());
+        Cache l2 = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        applyingRemote.set(true);
+        try {
+            for (UserChangedEvent user : batch.users()) {
+                l2.evictEntityData(Users.class, user.id());
+                l2.evictCollectionData(USER_PRODUCTS, user.id());
+                eventPublisher.publishEvent(user);
+            }
+            for (ProductChangedEvent product : batch.products()) {
+                l2.evictEntityData(Product.class, product.id());
+                if (product.userId() != null) {
+                    l2.evictCollectionData(USER_PRODUCTS, product.userId());
+                }
+                eventPublisher.publishEvent(product);
+            }
+            // the local update-timestamps region never saw the write, so cached query results are stale
+            l2.evictQueryRegions();
+        }
+        finally {
+            applyingRemote.remove();
+        }
+    }
+
+    /**
+     * Drops everything cached locally, for when invalidations may have been missed: the Spring caches, the
+     * L2 regions and the range indexes, and rebuilds the existence filters, which may lack inserted rows.
+     */
+    void clearAll() {
+        log.warn("Cache invalidations may have been missed, clearing all local caches");
+        cacheManager.getCacheNames().forEach(name -> {
+            var cache = cacheManager.getCache(name);
+            if (cache != null) {
+                cache.clear();
+            }
+        });
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+        rangeQueryCache.reset();
+        existenceFilter.invalidate();
+    }
+
+    private String encode(InvalidationBatch batch) {
+        try {
+            return objectMapper.writeValueAsString(batch);
+        }
+        catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not encode cache invalidations", e);
+        }
+    }
+
+    private static <T> List<T> drain(Map<Long, T> pending) {
+        List<T> drained = new ArrayList<>();
+        for (Long id : pending.keySet()) {
+            T change = pending.remove(id);
+            if (change != null) {
+                drained.add(change);
+            }
+        }
+        return drained;
+    }
+}
@@ -0,0 +1,46 @@
+package com.cache_test.cache_test.cache.bus;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Delivers messages synchronously to every subscriber of the same channel in this JVM. Stands in for a
+ * real transport when several application contexts run side by side, as in tests.
+ */
+public class InMemoryInvalidationTransport implements InvalidationTransport {
+
+    private static final Map<String, Set<Consumer<String>>> subscribers = new ConcurrentHashMap<>();
+
+    private final String channel;
+
+    private final Set<Consumer<String>> own = ConcurrentHashMap.newKeySet();
+
+    public InMemoryInvalidationTransport(String channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public int maxMessageBytes() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean publish(String message) {
+        subscribers.getOrDefault(channel, Set.of()).forEach(listener -> listener.accept(message));
+        return true;
+    }
+
+    @Override
+    public void subscribe(Consumer<String> listener, Runnable missedMessages) {
+        own.add(listener);
+        subscribers.computeIfAbsent(channel, c -> ConcurrentHashMap.newKeySet()).add(listener);
+    }
+
+    @Override
+    public void close() {
+        subscribers.getOrDefault(channel, Set.of()).removeAll(own);
+        own.clear();
+    }
+}
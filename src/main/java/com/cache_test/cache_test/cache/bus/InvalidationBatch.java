@@ -0,0 +1,18 @@
+package com.cache_test.cache_test.cache.bus;
+
+import com.cache_test.cache_test.cache.ProductChangedEvent;
+import com.cache_test.cache_test.cache.UserChangedEvent;
+
+import java.util.List;
+
+/**
+ * One message on the bus: the changes an instance committed since its last flush, at most one per entity.
+ *
+ * @param origin id of the publishing instance, which ignores its own messages
+ */
+public record InvalidationBatch(String origin, List<UserChangedEvent> users, List<ProductChangedEvent> products) {
+
+    int size() {
+        return users.size() + products.size();
+    }
+}
@@ -0,0 +1,28 @@
+package com.cache_test.cache_test.cache.bus;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries invalidation messages between the instances of the application. Every subscriber receives
+ * every message, including the ones its own instance published.
+ */
+public interface InvalidationTransport extends AutoCloseable {
+
+    /**
+     * Largest message the transport can deliver, in UTF-8 bytes.
+     */
+    int maxMessageBytes();
+
+    /**
+     * @return whether the message was sent; a message that was not may be published again later
+     */
+    boolean publish(String message);
+
+    /**
+     * @param missedMessages called when messages may have been lost, for example after a reconnect
+     */
+    void subscribe(Consumer<String> listener, Runnable missedMessages);
+
+    @Override
+    void close();
+}
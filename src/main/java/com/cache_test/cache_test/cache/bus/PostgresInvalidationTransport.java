@@ -0,0 +1,118 @@
+package com.cache_test.cache_test.cache.bus;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Postgres {@code LISTEN/NOTIFY} on the database all instances already share. Listening holds one
+ * connection of the pool for the lifetime of the application; publishing borrows one per message.
+ * Notifications sent while the listening connection is down are lost, which is reported as missed
+ * messages once it is back.
+ */
+@Slf4j
+public class PostgresInvalidationTransport implements InvalidationTransport {
+
+    private static final Pattern CHANNEL = Pattern.compile("[a-z_][a-z0-9_]*");
+
+    // NOTIFY rejects payloads of 8000 bytes or more
+    private static final int MAX_PAYLOAD_BYTES = 7999;
+
+    private static final int POLL_MILLIS = 500;
+
+    private final DataSource dataSource;
+
+    private final String channel;
+
+    private volatile boolean running = true;
+
+    private Thread listener;
+
+    public PostgresInvalidationTransport(DataSource dataSource, String channel) {
+        if (!CHANNEL.matcher(channel).matches()) {
+            throw new IllegalArgumentException("Invalid notification channel name: " + channel);
+        }
+        this.dataSource = dataSource;
+        this.channel = channel;
+    }
+
+    @Override
+    public int maxMessageBytes() {
+        return MAX_PAYLOAD_BYTES;
+    }
+
+    @Override
+    public boolean publish(String message) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+            statement.setString(1, channel);
+            statement.setString(2, message);
+            statement.execute();
+            return true;
+        }
+        catch (SQLException e) {
+            log.warn("Could not publish cache invalidation on channel {}: {}", channel, e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<String> messages, Runnable missedMessages) {
+        listener = Thread.ofPlatform()
+            .name("cache-invalidation-listener")
+            .daemon()
+            .start(() -> listen(messages, missedMessages));
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+        }
+    }
+
+    private void listen(Consumer<String> messages, Runnable missedMessages) {
+        boolean reconnect = false;
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                if (reconnect) {
+                    missedMessages.run();
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_MILLIS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            messages.accept(notification.getParameter());
+                        }
+                    }
+                }
+            }
+            catch (SQLException | RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Cache invalidation listener lost its connection, reconnecting: {}", e.getMessage());
+                reconnect = true;
+                try {
+                    Thread.sleep(1000);
+                }
+                catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+}
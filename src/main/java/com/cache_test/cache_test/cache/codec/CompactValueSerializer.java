@@ -0,0 +1,60 @@
+package com.cache_test.cache_test.cache.codec;
+
+import org.ehcache.impl.serialization.CompactJavaSerializer;
+import org.ehcache.spi.persistence.StateRepository;
+import org.ehcache.spi.serialization.SerializerException;
+import org.ehcache.spi.serialization.StatefulSerializer;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Ehcache value serializer writing {@link EntityCodec} values in its compact form and everything else,
+ * including Hibernate's L2 entries, with {@link CompactJavaSerializer}; the first byte tells them apart.
+ */
+public class CompactValueSerializer implements StatefulSerializer<Object> {
+
+    private static final byte ENTITY = 0;
+
+    private static final byte JAVA = 1;
+
+    private final CompactJavaSerializer<Object> fallback;
+
+    public CompactValueSerializer(ClassLoader classLoader) {
+        fallback = new CompactJavaSerializer<>(classLoader);
+    }
+
+    @Override
+    public void init(StateRepository stateRepository) {
+        fallback.init(stateRepository);
+    }
+
+    @Override
+    public ByteBuffer serialize(Object object) throws SerializerException {
+        if (EntityCodec.canEncode(object)) {
+            byte[] encoded = EntityCodec.encode(object);
+            return ByteBuffer.allocate(encoded.length + 1).put(ENTITY).put(encoded).flip();
+        }
+        ByteBuffer serialized = fallback.serialize(object);
+        return ByteBuffer.allocate(serialized.remaining() + 1).put(JAVA).put(serialized).flip();
+    }
+
+    @Override
+    public Object read(ByteBuffer binary) throws ClassNotFoundException, SerializerException {
+        byte format = binary.get();
+        if (format == ENTITY) {
+            try {
+                return EntityCodec.decode(binary);
+            }
+            catch (RuntimeException ex) {
+                throw new SerializerException(ex);
+            }
+        }
+        return fallback.read(binary.slice());
+    }
+
+    @Override
+    public boolean equals(Object object, ByteBuffer binary) throws ClassNotFoundException, SerializerException {
+        return Objects.equals(object, read(binary));
+    }
+}
@@ -0,0 +1,322 @@
+package com.cache_test.cache_test.cache.codec;
+
+import com.cache_test.cache_test.entity.Product;
+import com.cache_test.cache_test.entity.Users;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Binary form of cached {@link Users} and {@link Product} state, and of lists of them: a type tag, a bit
+ * set of the non-null fields, then those fields as zigzag varints and length-prefixed UTF-8. Associations
+ * are left out; a product's owner decodes as a {@link Users} carrying only the id.
+ */
+public final class EntityCodec {
+
+    static final byte USER = 1;
+
+    static final byte PRODUCT = 2;
+
+    static final byte LIST = 3;
+
+    private static final int ID = 1;
+
+    private static final int NAME = 1 << 1;
+
+    private static final int EMAIL = 1 << 2;
+
+    private static final int AGE = 1 << 3;
+
+    private static final int VERSION = 1 << 4;
+
+    private static final int DESCRIPTION = 1 << 5;
+
+    private static final int PRICE = 1 << 6;
+
+    private static final int BIG_PRICE = 1 << 7;
+
+    private static final int OWNER = 1 << 8;
+
+    private EntityCodec() {
+    }
+
+    /**
+     * @return whether {@link #encode} supports {@code value}
+     */
+    public static boolean canEncode(Object value) {
+        if (value instanceof Users || value instanceof Product) {
+            return true;
+        }
+        if (!(value instanceof List<?> list)) {
+            return false;
+        }
+        for (Object element : list) {
+            if (!(element instanceof Users || element instanceof Product)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static byte[] encode(Object value) {
+        Output out = new Output(64);
+        write(out, value);
+        return out.toByteArray();
+    }
+
+    public static Object decode(byte[] bytes) {
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Reads one value from the buffer's position onwards, leaving the position after it.
+     */
+    public static Object decode(ByteBuffer in) {
+        byte tag = in.get();
+        return switch (tag) {
+            case USER -> readUser(in);
+            case PRODUCT -> readProduct(in);
+            case LIST -> {
+                int size = readVarInt(in);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(decode(in));
+                }
+                yield list;
+            }
+            default -> throw new IllegalArgumentException("Unknown entity codec tag " + tag);
+        };
+    }
+
+    private static void write(Output out, Object value) {
+        if (value instanceof Users user) {
+            out.writeByte(USER);
+            writeUser(out, user);
+        }
+        else if (value instanceof Product product) {
+            out.writeByte(PRODUCT);
+            writeProduct(out, product);
+        }
+        else if (value instanceof List<?> list) {
+            out.writeByte(LIST);
+            out.writeVarLong(list.size());
+            for (Object element : list) {
+                write(out, element);
+            }
+        }
+        else {
+            throw new IllegalArgumentException("Cannot encode " + (value == null ? null : value.getClass()));
+        }
+    }
+
+    private static void writeUser(Output out, Users user) {
+        int fields = (user.getId() != null ? ID : 0)
+            | (user.getName() != null ? NAME : 0)
+            | (user.getEmail() != null ? EMAIL : 0)
+            | (user.getAge() != null ? AGE : 0)
+            | (user.getVersion() != null ? VERSION : 0);
+        out.writeVarLong(fields);
+        if (user.getId() != null) {
+            out.writeVarLong(zigzag(user.getId()));
+        }
+        if (user.getName() != null) {
+            out.writeString(user.getName());
+        }
+        if (user.getEmail() != null) {
+            out.writeString(user.getEmail());
+        }
+        if (user.getAge() != null) {
+            out.writeVarLong(zigzag(user.getAge()));
+        }
+        if (user.getVersion() != null) {
+            out.writeVarLong(zigzag(user.getVersion()));
+        }
+    }
+
+    private static Users readUser(ByteBuffer in) {
+        int fields = readVarInt(in);
+        Users user = new Users();
+        if ((fields & ID) != 0) {
+            user.setId(unzigzag(readVarLong(in)));
+        }
+        if ((fields & NAME) != 0) {
+            user.setName(readString(in));
+        }
+        if ((fields & EMAIL) != 0) {
+            user.setEmail(readString(in));
+        }
+        if ((fields & AGE) != 0) {
+            user.setAge((int) unzigzag(readVarLong(in)));
+        }
+        if ((fields & VERSION) != 0) {
+            user.setVersion(unzigzag(readVarLong(in)));
+        }
+        return user;
+    }
+
+    private static void writeProduct(Output out, Product product) {
+        BigDecimal price = product.getPrice();
+        // the owner is usually a lazy proxy, whose id is known without loading it
+        Long ownerId = product.getUser() != null ? product.getUser().getId() : null;
+        boolean bigPrice = price != null && price.unscaledValue().bitLength() > 63;
+        int fields = (product.getId() != null ? ID : 0)
+            | (product.getName() != null ? NAME : 0)
+            | (product.getDescription() != null ? DESCRIPTION : 0)
+            | (price != null ? PRICE : 0)
+            | (bigPrice ? BIG_PRICE : 0)
+            | (ownerId != null ? OWNER : 0)
+            | (product.getVersion() != null ? VERSION : 0);
+        out.writeVarLong(fields);
+        if (product.getId() != null) {
+            out.writeVarLong(zigzag(product.getId()));
+        }
+        if (product.getName() != null) {
+            out.writeString(product.getName());
+        }
+        if (product.getDescription() != null) {
+            out.writeString(product.getDescription());
+        }
+        if (price != null) {
+            out.writeVarLong(zigzag(price.scale()));
+            if (bigPrice) {
+                byte[] unscaled = price.unscaledValue().toByteArray();
+                out.writeVarLong(unscaled.length);
+                out.writeBytes(unscaled);
+            }
+            else {
+                out.writeVarLong(zigzag(price.unscaledValue().longValue()));
+            }
+        }
+        if (ownerId != null) {
+            out.writeVarLong(zigzag(ownerId));
+        }
+        if (product.getVersion() != null) {
+            out.writeVarLong(zigzag(product.getVersion()));
+        }
+    }
+
+    private static Product readProduct(ByteBuffer in) {
+        int fields = readVarInt(in);
+        Product product = new Product();
+        if ((fields & ID) != 0) {
+            product.setId(unzigzag(readVarLong(in)));
+        }
+        if ((fields & NAME) != 0) {
+            product.setName(readString(in));
+        }
+        if ((fields & DESCRIPTION) != 0) {
+            product.setDescription(readString(in));
+        }
+        if ((fields & PRICE) != 0) {
+            int scale = (int) unzigzag(readVarLong(in));
+            if ((fields & BIG_PRICE) != 0) {
+                byte[] unscaled = new byte[readVarInt(in)];
+                in.get(unscaled);
+                product.setPrice(new BigDecimal(new BigInteger(unscaled), scale));
+            }
+            else {
+                product.setPrice(BigDecimal.valueOf(unzigzag(readVarLong(in)), scale));
+            }
+        }
+        if ((fields & OWNER) != 0) {
+            Users owner = new Users();
+            owner.setId(unzigzag(readVarLong(in)));
+            product.setUser(owner);
+        }
+        if ((fields & VERSION) != 0) {
+            product.setVersion(unzigzag(readVarLong(in)));
+        }
+        return product;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        return Math.toIntExact(readVarLong(in));
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = readVarInt(in);
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        }
+        else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    private static final class Output {
+
+        private byte[] buffer;
+
+        private int size;
+
+        Output(int capacity) {
+            buffer = new byte[capacity];
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            buffer[size++] = (byte) b;
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeBytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            writeBytes(bytes);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        private void ensure(int bytes) {
+            if (size + bytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + bytes));
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.cache_test.cache_test.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "app.bulk")
+public class BulkProperties {
+
+    /**
+     * Rows inserted per transaction. The persistence context is cleared after each chunk, so memory stays
+     * flat however large the request is. The JDBC batch size itself is {@code hibernate.jdbc.batch_size}.
+     */
+    private int chunkSize = 1000;
+}
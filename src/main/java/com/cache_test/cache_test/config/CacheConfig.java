@@ -1,18 +1,216 @@
 package com.cache_test.cache_test.config;
 
+import com.cache_test.cache_test.cache.AdaptiveExpiry;
+import com.cache_test.cache_test.cache.CacheDependencyIndex;
+import com.cache_test.cache_test.cache.DependencyTrackingCacheManager;
+import com.cache_test.cache_test.cache.KeyActivity;
+import com.cache_test.cache_test.cache.RefreshAheadCaffeineCache;
+import com.cache_test.cache_test.cache.RepositoryCacheLoader;
+import com.cache_test.cache_test.cache.TypedKeyGenerator;
+import com.cache_test.cache_test.cache.UnifiedEntityStore;
+import com.cache_test.cache_test.cache.UnifiedStoreCache;
+import com.cache_test.cache_test.metrics.CacheMetrics;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.thread.Threading;
+import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CachingConfigurer;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.cache.jcache.JCacheCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import javax.cache.Caching;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 @EnableCaching
-public class CacheConfig {
+public class CacheConfig implements CachingConfigurer {
+
+    @Override
+    public KeyGenerator keyGenerator() {
+        return new TypedKeyGenerator();
+    }
+
+    @Bean
+    @Profile("!jcache")
+    public CacheManager cacheManager(
+        CacheProperties properties, CacheDependencyIndex index, RepositoryCacheLoader loader,
+        CacheMetrics metrics, Executor cacheLoadExecutor, UnifiedEntityStore unifiedStore, KeyActivity activity
+    ) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager() {
+            @Override
+            protected com.github.benmanes.caffeine.cache.Cache<Object, Object> createNativeCaffeineCache(String name) {
+                return caffeine(name, properties.getDefaults(), index, metrics, activity, cacheLoadExecutor).build();
+            }
+
+            @Override
+            protected Cache adaptCaffeineCache(
+                String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> cache
+            ) {
+                metrics.monitor(name, cache);
+                CacheProperties.Spec spec = properties.getCaches().getOrDefault(name, properties.getDefaults());
+                return new UnifiedStoreCache(
+                    new RefreshAheadCaffeineCache(
+                        name, cache, isAllowNullValues(), metrics.statsCounter(name),
+                        negativeCache(name, spec.getNegative(), index, metrics),
+                        spec.getAdaptive() != null ? activity : null
+                    ),
+                    unifiedStore
+                );
+            }
+        };
+        properties.getCaches().forEach((name, spec) -> {
+            if (spec.getRefreshAfterWrite() != null && spec.getAdaptive() != null) {
+                // a fixed refresh would fire after short adaptive lifetimes have already run out
+                throw new IllegalStateException("Cache " + name
+                    + " has adaptive lifetimes; use adaptive.refresh-ahead instead of refresh-after-write");
+            }
+            Caffeine<Object, Object> builder = caffeine(name, spec, index, metrics, activity, cacheLoadExecutor);
+            if (spec.getRefreshAfterWrite() != null) {
+                builder.refreshAfterWrite(spec.getRefreshAfterWrite());
+            }
+            // adaptive caches are refreshed ahead of expiry by AdaptiveRefresher, which needs the loader too
+            boolean loading = spec.getRefreshAfterWrite() != null || spec.getAdaptive() != null;
+            cacheManager.registerCustomCache(name, loading ? builder.build(loader) : builder.build());
+        });
+        return new DependencyTrackingCacheManager(cacheManager, index, metrics);
+    }
+
+    /**
+     * Runs background refreshes. With {@code spring.threads.virtual.enabled} its workers are virtual
+     * threads, still capped at {@code app.cache.loader.threads} so refreshes cannot drain the JDBC pool.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor cacheLoadExecutor(CacheProperties properties, Environment environment) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("cache-load-");
+        executor.setVirtualThreads(Threading.VIRTUAL.isActive(environment));
+        executor.setCorePoolSize(properties.getLoader().getThreads());
+        executor.setMaxPoolSize(properties.getLoader().getThreads());
+        executor.setQueueCapacity(properties.getLoader().getQueueCapacity());
+        return executor;
+    }
 
+    /**
+     * Runs the misses of the {@code *Async} service methods. A full queue makes the caller run the load
+     * itself, which slows callers down instead of failing their futures.
+     */
     @Bean
-    public CacheManager cacheManager() {
+    public ThreadPoolTaskExecutor asyncLookupExecutor(CacheProperties properties, Environment environment) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("cache-async-");
+        executor.setVirtualThreads(Threading.VIRTUAL.isActive(environment));
+        executor.setCorePoolSize(properties.getAsync().getThreads());
+        executor.setMaxPoolSize(properties.getAsync().getThreads());
+        executor.setQueueCapacity(properties.getAsync().getQueueCapacity());
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    /**
+     * The Ehcache manager behind the Hibernate L2 regions, and behind the Spring caches as well in the
+     * {@code jcache} profile. Sharing one instance keeps a single owner of the disk store directory.
+     */
+    @Bean(destroyMethod = "close")
+    public javax.cache.CacheManager jcacheManager(CacheProperties properties) throws IOException {
+        return Caching.getCachingProvider()
+            .getCacheManager(properties.getJcacheConfig().getURI(), getClass().getClassLoader());
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer l2CacheManagerCustomizer(javax.cache.CacheManager jcacheManager) {
+        return hibernateProperties -> hibernateProperties.put(ConfigSettings.CACHE_MANAGER, jcacheManager);
+    }
+
+    @Bean
+    @Profile("jcache")
+    public CacheManager jcacheCacheManager(
+        javax.cache.CacheManager jcacheManager, CacheProperties properties, CacheDependencyIndex index,
+        CacheMetrics metrics
+    ) {
+        JCacheCacheManager cacheManager = new JCacheCacheManager(jcacheManager);
+        cacheManager.afterPropertiesSet();
+        for (String name : properties.getCaches().keySet()) {
+            javax.cache.Cache<Object, Object> cache = jcacheManager.getCache(name);
+            if (cache != null) {
+                metrics.monitor(cache);
+            }
+        }
+        return new DependencyTrackingCacheManager(cacheManager, index, metrics);
+    }
+
+    private static Caffeine<Object, Object> caffeine(
+        String name, CacheProperties.Spec spec, CacheDependencyIndex index, CacheMetrics metrics,
+        KeyActivity activity, Executor executor
+    ) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+            .executor(executor)
+            .evictionListener((key, value, cause) -> index.forget(key));
+        if (spec.getMaximumWeight() != null) {
+            builder.maximumWeight(spec.getMaximumWeight()).weigher(CacheConfig::weigh);
+        }
+        else if (spec.getMaximumSize() != null) {
+            builder.maximumSize(spec.getMaximumSize());
+        }
+        if (spec.getAdaptive() != null) {
+            builder.expireAfter(new AdaptiveExpiry(
+                spec.getExpireAfterWrite(), spec.getAdaptive(), activity, metrics.ttl(name, spec.getAdaptive())
+            ));
+        }
+        else {
+            if (spec.getExpireAfterWrite() != null) {
+                builder.expireAfterWrite(spec.getExpireAfterWrite());
+            }
+            if (spec.getExpireAfterAccess() != null) {
+                builder.expireAfterAccess(spec.getExpireAfterAccess());
+            }
+        }
+        if (spec.isRecordStats()) {
+            builder.recordStats(() -> metrics.statsCounter(name));
+        }
+        return builder;
+    }
+
+    private static com.github.benmanes.caffeine.cache.Cache<Object, Object> negativeCache(
+        String name, CacheProperties.Negative spec, CacheDependencyIndex index, CacheMetrics metrics
+    ) {
+        if (spec == null) {
+            return null;
+        }
+        String negativeName = name + ".negative";
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> cache = Caffeine.newBuilder()
+            .maximumSize(spec.getMaximumSize())
+            .expireAfterWrite(spec.getExpireAfterWrite())
+            .evictionListener((key, value, cause) -> index.forget(key))
+            .recordStats(() -> metrics.statsCounter(negativeName))
+            .build();
+        metrics.monitor(negativeName, cache);
+        return cache;
+    }
 
-        return new ConcurrentMapCacheManager();
+    private static int weigh(Object key, Object value) {
+        int references = UnifiedEntityStore.referencedCount(value);
+        if (references >= 0) {
+            return Math.max(1, references);
+        }
+        if (value instanceof Collection<?> collection) {
+            return Math.max(1, collection.size());
+        }
+        if (value instanceof Map<?, ?> map) {
+            return Math.max(1, map.size());
+        }
+        return 1;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,244 @@
+package com.cache_test.cache_test.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "app.cache")
+public class CacheProperties {
+
+    /**
+     * Ehcache configuration of the Hibernate L2 regions, and of the Spring caches when the {@code jcache}
+     * profile is active.
+     */
+    private Resource jcacheConfig = new ClassPathResource("ehcache.xml");
+
+    /**
+     * Applied to caches that are created on demand and have no entry in {@link #caches}.
+     */
+    private Spec defaults = new Spec();
+
+    private Map<String, Spec> caches = new LinkedHashMap<>();
+
+    /**
+     * Keep entities only in the Hibernate L2 regions; the Spring caches then hold their ids.
+     */
+    private boolean unified = false;
+
+    private LoaderPool loader = new LoaderPool();
+
+    /**
+     * Runs the cache misses of the {@code *Async} service methods.
+     */
+    private LoaderPool async = new LoaderPool(16, 1000);
+
+    private Warmup warmup = new Warmup();
+
+    private Bus bus = new Bus();
+
+    private Existence existence = new Existence();
+
+    private Activity activity = new Activity();
+
+    private RangeIndex rangeIndex = new RangeIndex();
+
+    @Data
+    public static class Spec {
+
+        private Long maximumSize = 1000L;
+
+        /**
+         * Upper bound on the total weight, where a collection weighs as many units as it has elements.
+         * Takes precedence over {@link #maximumSize} when set.
+         */
+        private Long maximumWeight;
+
+        private Duration expireAfterWrite = Duration.ofMinutes(10);
+
+        private Duration expireAfterAccess;
+
+        /**
+         * Entries read after this long are reloaded in the background while the old value is still served.
+         * Only applies to caches listed in {@link #caches} without {@link #adaptive} lifetimes, which are
+         * refreshed relative to their own lifetime instead, see {@link Adaptive#refreshAhead}.
+         */
+        private Duration refreshAfterWrite;
+
+        private boolean recordStats = true;
+
+        /**
+         * Separate store for lookups that found nothing. Without it, such results share the entry limit
+         * and lifetime of the found ones.
+         */
+        private Negative negative;
+
+        /**
+         * Per-entry lifetimes derived from how often the entry's entity is read and written; replaces
+         * {@link #expireAfterWrite}, which becomes the lifetime of an entry with balanced activity, and
+         * {@link #expireAfterAccess}.
+         */
+        private Adaptive adaptive;
+    }
+
+    @Data
+    public static class Adaptive {
+
+        private Duration minTtl = Duration.ofMinutes(1);
+
+        private Duration maxTtl = Duration.ofHours(6);
+
+        /**
+         * Hot entries with less than this fraction of their lifetime left are reloaded in the background.
+         * The window should be longer than {@code app.cache.activity.refresh-interval} at {@link #minTtl}.
+         */
+        private double refreshAhead = 0.2;
+
+        /**
+         * Recent reads, decayed, that make an entry hot.
+         */
+        private double hotReads = 10;
+    }
+
+    @Data
+    public static class Negative {
+
+        private long maximumSize = 10_000;
+
+        /**
+         * Kept short: a row inserted under a cached missing key is only seen once the entry expires, unless
+         * the write's own eviction reaches it first.
+         */
+        private Duration expireAfterWrite = Duration.ofSeconds(30);
+    }
+
+    /**
+     * Bounded pool for cache loads, so they never queue on the common fork-join pool.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LoaderPool {
+
+        private int threads = 4;
+
+        private int queueCapacity = 500;
+    }
+
+    /**
+     * Recording of the hottest keys and preloading them on the next start.
+     */
+    @Data
+    public static class Warmup {
+
+        private boolean enabled = true;
+
+        private Path profileFile = Path.of(".cache-profile");
+
+        /**
+         * How many of the hottest keys to record per cache.
+         */
+        private int keysPerCache = 1000;
+
+        private Duration saveInterval = Duration.ofMinutes(5);
+
+        /**
+         * Keys loaded per task; ids are fetched in one query per batch.
+         */
+        private int batchSize = 100;
+
+        private int concurrency = 4;
+
+        /**
+         * Startup waits at most this long for preloading; keys not reached by then stay cold.
+         */
+        private Duration timeBudget = Duration.ofSeconds(30);
+    }
+
+    /**
+     * Broadcast of committed changes to the other instances sharing the database, so their local caches
+     * evict the same entries.
+     */
+    @Data
+    public static class Bus {
+
+        private boolean enabled = false;
+
+        /**
+         * {@code postgres} for LISTEN/NOTIFY on the shared database, {@code in-memory} for instances
+         * running in one JVM.
+         */
+        private String transport = "postgres";
+
+        private String channel = "cache_invalidation";
+
+        /**
+         * Changes are collected for this long and sent as one message, one entry per changed entity.
+         */
+        private Duration flushInterval = Duration.ofMillis(50);
+    }
+
+    /**
+     * Bloom filters of the existing ids and emails, consulted before a cache miss reaches the database.
+     */
+    @Data
+    public static class Existence {
+
+        private boolean enabled = false;
+
+        /**
+         * Rows the filters are sized for at first; rebuilds size them for twice the current row count.
+         */
+        private long expectedInsertions = 1_000_000;
+
+        private double falsePositiveRate = 0.01;
+
+        private Duration rebuildInterval = Duration.ofHours(1);
+
+        /**
+         * Writes this recent are replayed into a rebuilt filter, as their rows may commit after its scan;
+         * at least the longest write transaction.
+         */
+        private Duration replayWindow = Duration.ofMinutes(1);
+    }
+
+    /**
+     * Read and write counts behind the adaptive lifetimes, see {@link Adaptive}.
+     */
+    @Data
+    public static class Activity {
+
+        /**
+         * Counts are halved this often, so they reflect recent activity.
+         */
+        private Duration halfLife = Duration.ofMinutes(10);
+
+        private long maximumSize = 100_000;
+
+        /**
+         * How often hot entries are checked for a refresh ahead of expiry.
+         */
+        private Duration refreshInterval = Duration.ofSeconds(30);
+    }
+
+    /**
+     * The sorted indexes behind the {@code price > x} and {@code age > x} queries.
+     */
+    @Data
+    public static class RangeIndex {
+
+        /**
+         * An index is reloaded in full once it is this old, which bounds how long writes that raised no
+         * change event, such as raw SQL or another service's, stay invisible to it.
+         */
+        private Duration maxAge = Duration.ofMinutes(10);
+    }
+}
@@ -22,19 +22,25 @@ public class DataInitializer implements CommandLineRunner {
 
     @Override
     public void run(String... args) throws Exception {
+        if (userRepository.count() > 0) {
+            log.info("Test data already present, skipping initialization.");
+            return;
+        }
         log.info("Initializing test data...");
 
-        Users user1 = new Users(null, "John Doe", "john@example.com", 25, null);
-        Users user2 = new Users(null, "Jane Smith", "jane@example.com", 30, null);
-        Users user3 = new Users(null, "Bob Johnson", "bob@example.com", 35, null);
+        Users user1 = new Users(null, "John Doe", "john@example.com", 25, null, null);
+        Users user2 = new Users(null, "Jane Smith", "jane@example.com", 30, null, null);
+        Users user3 = new Users(null, "Bob Johnson", "bob@example.com", 35, null, null);
 
         userRepository.saveAll(Arrays.asList(user1, user2, user3));
 
-        Product product1 = new Product(null, "Laptop", "Gaming laptop", new BigDecimal("1500.00"), user1);
-        Product product2 = new Product(null, "Mouse", "Wireless mouse", new BigDecimal("50.00"), user1);
-        Product product3 = new Product(null, "Keyboard", "Mechanical keyboard", new BigDecimal("120.00"), user2);
-        Product product4 = new Product(null, "Monitor", "4K monitor", new BigDecimal("400.00"), user2);
-        Product product5 = new Product(null, "Headphones", "Noise-cancelling headphones", new BigDecimal("300.00"), user3);
+        Product product1 = new Product(null, "Laptop", "Gaming laptop", new BigDecimal("1500.00"), user1, null);
+        Product product2 = new Product(null, "Mouse", "Wireless mouse", new BigDecimal("50.00"), user1, null);
+        Product product3 = new Product(null, "Keyboard", "Mechanical keyboard", new BigDecimal("120.00"), user2, null);
+        Product product4 = new Product(null, "Monitor", "4K monitor", new BigDecimal("400.00"), user2, null);
+        Product product5 = new Product(
+            null, "Headphones", "Noise-cancelling headphones", new BigDecimal("300.00"), user3, null
+        );
 
         productRepository.saveAll(Arrays.asList(product1, product2, product3, product4, product5));
 
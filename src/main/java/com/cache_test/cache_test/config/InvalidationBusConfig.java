@@ -0,0 +1,52 @@
+package com.cache_test.cache_test.config;
+
+import com.cache_test.cache_test.cache.ExistenceFilter;
+import com.cache_test.cache_test.cache.RangeQueryCache;
+import com.cache_test.cache_test.cache.bus.CacheInvalidationBus;
+import com.cache_test.cache_test.cache.bus.InMemoryInvalidationTransport;
+import com.cache_test.cache_test.cache.bus.InvalidationTransport;
+import com.cache_test.cache_test.cache.bus.PostgresInvalidationTransport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.TaskScheduler;
+
+import javax.sql.DataSource;
+
+@Configuration
+@ConditionalOnProperty(prefix = "app.cache.bus", name = "enabled", havingValue = "true")
+public class InvalidationBusConfig {
+
+    @Bean(destroyMethod = "")
+    @ConditionalOnProperty(
+        prefix = "app.cache.bus", name = "transport", havingValue = "postgres", matchIfMissing = true
+    )
+    public InvalidationTransport postgresInvalidationTransport(DataSource dataSource, CacheProperties properties) {
+        return new PostgresInvalidationTransport(dataSource, properties.getBus().getChannel());
+    }
+
+    @Bean(destroyMethod = "")
+    @ConditionalOnProperty(prefix = "app.cache.bus", name = "transport", havingValue = "in-memory")
+    public InvalidationTransport inMemoryInvalidationTransport(CacheProperties properties) {
+        return new InMemoryInvalidationTransport(properties.getBus().getChannel());
+    }
+
+    // the bus closes the transport itself, after its last flush
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public CacheInvalidationBus cacheInvalidationBus(
+        InvalidationTransport transport, ObjectMapper objectMapper, ApplicationEventPublisher eventPublisher,
+        EntityManagerFactory entityManagerFactory, CacheManager cacheManager, RangeQueryCache rangeQueryCache,
+        ExistenceFilter existenceFilter, TaskScheduler taskScheduler, CacheProperties properties
+    ) {
+        CacheInvalidationBus bus = new CacheInvalidationBus(
+            transport, objectMapper, eventPublisher, entityManagerFactory, cacheManager, rangeQueryCache,
+            existenceFilter
+        );
+        taskScheduler.scheduleWithFixedDelay(bus::flush, properties.getBus().getFlushInterval());
+        return bus;
+    }
+}
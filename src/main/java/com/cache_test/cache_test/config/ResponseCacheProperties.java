@@ -0,0 +1,20 @@
+package com.cache_test.cache_test.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@ConfigurationProperties(prefix = "app.response-cache")
+public class ResponseCacheProperties {
+
+    /**
+     * Serve hot GET endpoints from pre-encoded JSON instead of serializing the cached object per request.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Upper bound on the encoded bodies held, by their byte length.
+     */
+    private DataSize maximumSize = DataSize.ofMegabytes(32);
+}
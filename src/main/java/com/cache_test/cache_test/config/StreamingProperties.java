@@ -0,0 +1,25 @@
+package com.cache_test.cache_test.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "app.streaming")
+public class StreamingProperties {
+
+    /**
+     * Rows the JDBC driver fetches per round trip while a streaming endpoint walks a result.
+     */
+    private int fetchSize = 500;
+
+    private int defaultPageSize = 100;
+
+    private int maxPageSize = 1000;
+
+    public int pageSize(Integer requested) {
+        if (requested == null) {
+            return defaultPageSize;
+        }
+        return Math.max(1, Math.min(requested, maxPageSize));
+    }
+}
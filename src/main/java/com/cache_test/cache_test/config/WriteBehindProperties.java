@@ -0,0 +1,35 @@
+package com.cache_test.cache_test.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.write-behind")
+public class WriteBehindProperties {
+
+    /**
+     * Queue updates of existing products and write them in batches instead of on every save.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Most products with a pending update. Repeated updates of one product take one slot; once the queue
+     * is full, saving a further product writes a batch on the caller's thread first.
+     */
+    private int capacity = 10_000;
+
+    private Duration flushInterval = Duration.ofSeconds(1);
+
+    /**
+     * Updates written per transaction.
+     */
+    private int batchSize = 500;
+
+    /**
+     * Writes of one update before it is given up and reported to the
+     * {@link com.cache_test.cache_test.repo.WriteBehindListener}s.
+     */
+    private int maxAttempts = 3;
+}
@@ -0,0 +1,70 @@
+package com.cache_test.cache_test.controllers;
+
+import com.cache_test.cache_test.cache.CacheKey;
+import com.cache_test.cache_test.config.ResponseCacheProperties;
+import com.cache_test.cache_test.metrics.CacheMetrics;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+/**
+ * JSON bodies of hot GET endpoints, keyed like the object cache entries they were encoded from and served
+ * only while the object cache returns that same instance, so any write to the entry invalidates the body
+ * too. Responses carry an ETag for conditional requests.
+ */
+@Component
+class JsonResponseCache {
+
+    private final ObjectMapper objectMapper;
+
+    private final ResponseCacheProperties properties;
+
+    private final Cache<CacheKey, Encoded> bodies;
+
+    JsonResponseCache(ObjectMapper objectMapper, ResponseCacheProperties properties, CacheMetrics metrics) {
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.bodies = Caffeine.newBuilder()
+            .maximumWeight(properties.getMaximumSize().toBytes())
+            .weigher((CacheKey key, Encoded encoded) -> encoded.body().length)
+            .recordStats(() -> metrics.statsCounter("responses"))
+            .build();
+        metrics.monitor("responses", bodies);
+    }
+
+    /**
+     * @param value the value the service returned for {@code key}, normally straight from the object cache
+     */
+    ResponseEntity<?> ok(CacheKey key, Object value) {
+        if (!properties.isEnabled()) {
+            return ResponseEntity.ok(value);
+        }
+        Encoded encoded = bodies.getIfPresent(key);
+        if (encoded == null || encoded.source() != value) {
+            encoded = encode(value);
+            bodies.put(key, encoded);
+        }
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .eTag(encoded.etag())
+            .body(encoded.body());
+    }
+
+    private Encoded encode(Object value) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(value);
+            return new Encoded(value, body, '"' + DigestUtils.md5DigestAsHex(body) + '"');
+        }
+        catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not encode " + value.getClass().getSimpleName(), e);
+        }
+    }
+
+    private record Encoded(Object source, byte[] body, String etag) {
+    }
+}
@@ -1,10 +1,19 @@
 package com.cache_test.cache_test.controllers;
 
+import com.cache_test.cache_test.cache.CacheKey;
+import com.cache_test.cache_test.cache.QueryKind;
+import com.cache_test.cache_test.dto.BulkInsertResult;
+import com.cache_test.cache_test.dto.KeysetPage;
+import com.cache_test.cache_test.dto.ProductView;
 import com.cache_test.cache_test.entity.Product;
 import com.cache_test.cache_test.repo.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -16,21 +25,26 @@ public class ProductController {
 
     private final ProductService productService;
 
+    private final ObjectMapper objectMapper;
+
+    private final JsonResponseCache responseCache;
+
     @GetMapping("/{id}")
-    public ResponseEntity<Product> getProductById(@PathVariable Long id) {
-        return productService.findById(id)
-            .map(ResponseEntity::ok)
+    public ResponseEntity<?> getProductById(@PathVariable Long id) {
+        return productService.findViewById(id)
+            .<ResponseEntity<?>>map(view -> responseCache.ok(CacheKey.of(QueryKind.PRODUCT_VIEW_BY_ID, id), view))
             .orElse(ResponseEntity.notFound().build());
     }
 
     @GetMapping("/user/{userId}")
-    public List<Product> getProductsByUserId(@PathVariable Long userId) {
-        return productService.findByUserId(userId);
+    public ResponseEntity<?> getProductsByUserId(@PathVariable Long userId) {
+        List<ProductView> products = productService.findViewsByUserId(userId);
+        return responseCache.ok(CacheKey.of(QueryKind.PRODUCT_VIEWS_BY_USER, userId), products);
     }
 
     @GetMapping("/price-greater-than/{price}")
-    public List<Product> getProductsWithPriceGreaterThan(@PathVariable BigDecimal price) {
-        return productService.findProductsWithPriceGreaterThan(price);
+    public List<ProductView> getProductsWithPriceGreaterThan(@PathVariable BigDecimal price) {
+        return productService.findProductsWithPriceGreaterThan(price).stream().map(ProductView::of).toList();
     }
 
     @GetMapping("/with-user")
@@ -38,26 +52,54 @@ public class ProductController {
         return productService.findAllWithUser();
     }
 
+    @GetMapping("/with-user/page")
+    public KeysetPage<Product> getProductsWithUserPage(
+        @RequestParam(defaultValue = "0") Long after,
+        @RequestParam(required = false) Integer size
+    ) {
+        return productService.findPageWithUser(after, size);
+    }
+
+    @GetMapping("/with-user/stream")
+    public ResponseEntity<StreamingResponseBody> streamProductsWithUser() {
+        return JsonArrayStream.of(objectMapper, productService::streamAllWithUser);
+    }
+
+    @PostMapping("/batch")
+    public List<ProductView> getProductsByIds(@RequestBody List<Long> ids) {
+        return productService.findAllById(ids).stream().map(ProductView::of).toList();
+    }
+
     @PostMapping
     public Product createProduct(@RequestBody Product product) {
         return productService.save(product);
     }
 
+    @PostMapping("/bulk")
+    public BulkInsertResult createProducts(@RequestBody List<Product> products) {
+        return productService.saveAll(products);
+    }
+
+    /**
+     * Answers 409 when the body carries a version and the product was updated since.
+     */
     @PutMapping("/{id}")
     public ResponseEntity<Product> updateProduct(@PathVariable Long id, @RequestBody Product product) {
-        if (!productService.findById(id).isPresent()) {
-            return ResponseEntity.notFound().build();
-        }
         product.setId(id);
-        return ResponseEntity.ok(productService.save(product));
+        try {
+            return productService.updateIfExists(product) == 0
+                ? ResponseEntity.notFound().build()
+                : ResponseEntity.ok(product);
+        }
+        catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteProduct(@PathVariable Long id) {
-        if (!productService.findById(id).isPresent()) {
-            return ResponseEntity.notFound().build();
-        }
-        productService.deleteById(id);
-        return ResponseEntity.noContent().build();
+        return productService.deleteIfExists(id) == 0
+            ? ResponseEntity.notFound().build()
+            : ResponseEntity.noContent().build();
     }
 }
@@ -1,12 +1,27 @@
 package com.cache_test.cache_test.controllers;
 
+import com.cache_test.cache_test.cache.CacheKey;
+import com.cache_test.cache_test.cache.QueryKind;
+import com.cache_test.cache_test.dto.BulkInsertResult;
+import com.cache_test.cache_test.dto.KeysetPage;
+import com.cache_test.cache_test.dto.ProductView;
+import com.cache_test.cache_test.dto.UserDashboard;
+import com.cache_test.cache_test.dto.UserView;
 import com.cache_test.cache_test.entity.Users;
+import com.cache_test.cache_test.repo.ProductService;
 import com.cache_test.cache_test.repo.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/users")
@@ -15,23 +30,49 @@ public class UserController {
 
     private final UserService userService;
 
+    private final ProductService productService;
+
+    private final ObjectMapper objectMapper;
+
+    private final JsonResponseCache responseCache;
+
     @GetMapping("/{id}")
-    public ResponseEntity<Users> getUserById(@PathVariable Long id) {
-        return userService.findById(id)
-            .map(ResponseEntity::ok)
+    public ResponseEntity<?> getUserById(@PathVariable Long id) {
+        return userService.findViewById(id)
+            .<ResponseEntity<?>>map(view -> responseCache.ok(CacheKey.of(QueryKind.USER_VIEW_BY_ID, id), view))
             .orElse(ResponseEntity.notFound().build());
     }
 
     @GetMapping("/email/{email}")
-    public ResponseEntity<Users> getUserByEmail(@PathVariable String email) {
-        return userService.findByEmail(email)
-            .map(ResponseEntity::ok)
+    public ResponseEntity<?> getUserByEmail(@PathVariable String email) {
+        return userService.findViewByEmail(email)
+            .<ResponseEntity<?>>map(view -> responseCache.ok(CacheKey.of(QueryKind.USER_VIEW_BY_EMAIL, email), view))
             .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Looks up the user, their products and the optional price query in parallel; cached parts complete
+     * without leaving the request thread.
+     */
+    @GetMapping("/{id}/dashboard")
+    public CompletableFuture<ResponseEntity<UserDashboard>> getUserDashboard(
+        @PathVariable Long id,
+        @RequestParam(required = false) BigDecimal minPrice
+    ) {
+        CompletableFuture<List<ProductView>> products = productService.findViewsByUserIdAsync(id);
+        CompletableFuture<List<ProductView>> abovePrice = minPrice == null
+            ? CompletableFuture.completedFuture(null)
+            : productService.findProductsWithPriceGreaterThanAsync(minPrice)
+                .thenApply(found -> found.stream().map(ProductView::of).toList());
+        CompletableFuture<Optional<UserView>> user = userService.findViewByIdAsync(id);
+        return CompletableFuture.allOf(user, products, abovePrice).thenApply(done -> user.join()
+            .map(found -> ResponseEntity.ok(new UserDashboard(found, products.join(), abovePrice.join())))
+            .orElse(ResponseEntity.notFound().build()));
+    }
+
     @GetMapping("/older-than/{age}")
-    public List<Users> getUsersOlderThan(@PathVariable Integer age) {
-        return userService.findUsersOlderThan(age);
+    public List<UserView> getUsersOlderThan(@PathVariable Integer age) {
+        return userService.findUsersOlderThan(age).stream().map(UserView::of).toList();
     }
 
     @GetMapping("/with-products")
@@ -39,26 +80,54 @@ public class UserController {
         return userService.findAllWithProducts();
     }
 
+    @GetMapping("/with-products/page")
+    public KeysetPage<Users> getUsersWithProductsPage(
+        @RequestParam(defaultValue = "0") Long after,
+        @RequestParam(required = false) Integer size
+    ) {
+        return userService.findPageWithProducts(after, size);
+    }
+
+    @GetMapping("/with-products/stream")
+    public ResponseEntity<StreamingResponseBody> streamUsersWithProducts() {
+        return JsonArrayStream.of(objectMapper, userService::streamAllWithProducts);
+    }
+
+    @PostMapping("/batch")
+    public List<UserView> getUsersByIds(@RequestBody List<Long> ids) {
+        return userService.findAllById(ids).stream().map(UserView::of).toList();
+    }
+
     @PostMapping
     public Users createUser(@RequestBody Users user) {
         return userService.save(user);
     }
 
+    @PostMapping("/bulk")
+    public BulkInsertResult createUsers(@RequestBody List<Users> users) {
+        return userService.saveAll(users);
+    }
+
+    /**
+     * Answers 409 when the body carries a version and the user was updated since.
+     */
     @PutMapping("/{id}")
     public ResponseEntity<Users> updateUser(@PathVariable Long id, @RequestBody Users user) {
-        if (!userService.findById(id).isPresent()) {
-            return ResponseEntity.notFound().build();
-        }
         user.setId(id);
-        return ResponseEntity.ok(userService.save(user));
+        try {
+            return userService.updateIfExists(user) == 0
+                ? ResponseEntity.notFound().build()
+                : ResponseEntity.ok(user);
+        }
+        catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteUser(@PathVariable Long id) {
-        if (!userService.findById(id).isPresent()) {
-            return ResponseEntity.notFound().build();
-        }
-        userService.deleteById(id);
-        return ResponseEntity.noContent().build();
+        return userService.deleteIfExists(id) == 0
+            ? ResponseEntity.notFound().build()
+            : ResponseEntity.noContent().build();
     }
 }
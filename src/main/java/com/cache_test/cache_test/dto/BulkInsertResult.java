@@ -0,0 +1,4 @@
+package com.cache_test.cache_test.dto;
+
+public record BulkInsertResult(int inserted) {
+}
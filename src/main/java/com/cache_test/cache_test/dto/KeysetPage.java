@@ -0,0 +1,10 @@
+package com.cache_test.cache_test.dto;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing. Pass {@code nextCursor} as {@code after} to get the next
+ * page; it is {@code null} on the last page.
+ */
+public record KeysetPage<T>(List<T> items, Long nextCursor) {
+}
@@ -0,0 +1,24 @@
+package com.cache_test.cache_test.dto;
+
+import com.cache_test.cache_test.entity.Product;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * Read model of a product, with the owner as a foreign key rather than a proxy to serialize.
+ */
+public record ProductView(Long id, String name, String description, BigDecimal price, Long userId)
+    implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static ProductView of(Product product) {
+        Long userId = product.getUser() != null ? product.getUser().getId() : null;
+        return new ProductView(
+            product.getId(), product.getName(), product.getDescription(), product.getPrice(), userId
+        );
+    }
+}
@@ -0,0 +1,12 @@
+package com.cache_test.cache_test.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * A user with their products and, when a price was asked for, the products above it.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UserDashboard(UserView user, List<ProductView> products, List<ProductView> productsAbovePrice) {
+}
@@ -0,0 +1,19 @@
+package com.cache_test.cache_test.dto;
+
+import com.cache_test.cache_test.entity.Users;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Read model of a user: its own columns only, so serializing it never touches the lazy products.
+ */
+public record UserView(Long id, String name, String email, Integer age) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static UserView of(Users user) {
+        return new UserView(user.getId(), user.getName(), user.getEmail(), user.getAge());
+    }
+}
@@ -0,0 +1,79 @@
+package com.cache_test.cache_test.metrics;
+
+import com.cache_test.cache_test.config.CacheProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Meters of the Spring caches, tagged with the cache name: {@code cache.gets} by {@code result},
+ * {@code cache.puts}, {@code cache.load}, {@code cache.evictions}, {@code cache.size}, {@code cache.ttl} and
+ * {@code cache.refreshes}. They keep the tags of Micrometer's cache binders, as Prometheus drops meters whose
+ * name is taken with other tag keys.
+ */
+@Component
+@RequiredArgsConstructor
+public class CacheMetrics {
+
+    private final MeterRegistry registry;
+
+    private final Map<String, Counter> puts = new ConcurrentHashMap<>();
+
+    // caches whose puts the JCache binder already counts
+    private final Set<String> bound = ConcurrentHashMap.newKeySet();
+
+    public StatsCounter statsCounter(String cacheName) {
+        return new MeteredStatsCounter(registry, cacheName);
+    }
+
+    public void monitor(String cacheName, Cache<?, ?> cache) {
+        Gauge.builder("cache.size", cache, Cache::estimatedSize)
+            .tag("cache", cacheName)
+            .register(registry);
+    }
+
+    /**
+     * Ehcache keeps its own statistics, which Micrometer reads through the JSR-107 management beans. Its
+     * {@code cache.puts} includes the explicit puts, so {@link #recordPut} leaves such caches alone.
+     */
+    public void monitor(javax.cache.Cache<?, ?> cache) {
+        cache.getCacheManager().enableStatistics(cache.getName(), true);
+        JCacheMetrics.monitor(registry, cache);
+        bound.add(cache.getName());
+    }
+
+    public Timer ttl(String cacheName, CacheProperties.Adaptive adaptive) {
+        return Timer.builder("cache.ttl")
+            .tag("cache", cacheName)
+            .publishPercentileHistogram()
+            .minimumExpectedValue(adaptive.getMinTtl())
+            .maximumExpectedValue(adaptive.getMaxTtl())
+            .register(registry);
+    }
+
+    public Counter refreshes(String cacheName) {
+        return Counter.builder("cache.refreshes")
+            .tag("cache", cacheName)
+            .register(registry);
+    }
+
+    public void recordPut(String cacheName) {
+        if (bound.contains(cacheName)) {
+            return;
+        }
+        puts.computeIfAbsent(cacheName, name -> Counter.builder("cache.puts")
+                .tag("cache", name)
+                .register(registry))
+            .increment();
+    }
+}
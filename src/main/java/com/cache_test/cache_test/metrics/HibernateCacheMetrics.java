@@ -0,0 +1,139 @@
+package com.cache_test.cache_test.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ToDoubleFunction;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Meters of the Hibernate second-level cache from its {@link Statistics}, tagged with the region:
+ * {@code hibernate.cache.region.gets}, {@code .puts} and {@code .entries}, {@code .evictions} from the JCache
+ * statistics of the region, and {@code hibernate.query.cache.gets} and {@code .puts}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class HibernateCacheMetrics {
+
+    // characters that cannot appear in an unquoted ObjectName value
+    private static final Pattern SANITIZED = Pattern.compile("[,:=\n*?\"]");
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final MeterRegistry registry;
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void bind() {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        Statistics statistics = sessionFactory.getStatistics();
+        if (!statistics.isStatisticsEnabled()) {
+            log.warn("Hibernate statistics are disabled, L2 cache meters will stay at zero");
+        }
+
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            bindRegion(region, statistics.getDomainDataRegionStatistics(region));
+        }
+        counter("hibernate.query.cache.gets", statistics, Statistics::getQueryCacheHitCount, "result", "hit");
+        counter("hibernate.query.cache.gets", statistics, Statistics::getQueryCacheMissCount, "result", "miss");
+        counter("hibernate.query.cache.puts", statistics, Statistics::getQueryCachePutCount);
+
+        if (sessionFactory.getCache().getRegionFactory() instanceof JCacheRegionFactory regionFactory) {
+            for (String region : statistics.getSecondLevelCacheRegionNames()) {
+                javax.cache.Cache<?, ?> cache = regionFactory.getCacheManager().getCache(region);
+                if (cache != null) {
+                    evictions(region, cache);
+                }
+            }
+        }
+    }
+
+    private void bindRegion(String region, CacheRegionStatistics stats) {
+        counter("hibernate.cache.region.gets", stats, CacheRegionStatistics::getHitCount,
+            "region", region, "result", "hit");
+        counter("hibernate.cache.region.gets", stats, CacheRegionStatistics::getMissCount,
+            "region", region, "result", "miss");
+        counter("hibernate.cache.region.puts", stats, CacheRegionStatistics::getPutCount, "region", region);
+        entries(region, "heap", stats, CacheRegionStatistics::getElementCountInMemory);
+        entries(region, "disk", stats, CacheRegionStatistics::getElementCountOnDisk);
+    }
+
+    private <T> void counter(String name, T state, ToDoubleFunction<T> count, String... tags) {
+        FunctionCounter.builder(name, state, count)
+            .tags(tags)
+            .register(registry);
+    }
+
+    private void evictions(String region, javax.cache.Cache<?, ?> cache) {
+        javax.cache.CacheManager cacheManager = cache.getCacheManager();
+        cacheManager.enableStatistics(region, true);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        String uri = cacheManager.getURI().toString();
+        // Ehcache registers the statistics bean under sanitized values, other providers may quote them
+        ObjectName bean = Stream.of(
+                statisticsBean(SANITIZED.matcher(uri).replaceAll("."), SANITIZED.matcher(region).replaceAll(".")),
+                statisticsBean(ObjectName.quote(uri), ObjectName.quote(region))
+            )
+            .filter(name -> name != null && server.isRegistered(name))
+            .findFirst()
+            .orElse(null);
+        if (bean == null) {
+            log.warn("No eviction meter for L2 region {}: its cache provider registers no statistics bean", region);
+            return;
+        }
+        AtomicBoolean warned = new AtomicBoolean();
+        FunctionCounter.builder("hibernate.cache.region.evictions", server, s -> {
+                try {
+                    return ((Number) s.getAttribute(bean, "CacheEvictions")).doubleValue();
+                }
+                catch (JMException e) {
+                    if (warned.compareAndSet(false, true)) {
+                        log.warn("Could not read the evictions of L2 region {}: {}", region, e.getMessage());
+                    }
+                    return Double.NaN;
+                }
+            })
+            .tag("region", region)
+            .register(registry);
+    }
+
+    private static ObjectName statisticsBean(String cacheManager, String cache) {
+        try {
+            return new ObjectName("javax.cache:type=CacheStatistics,CacheManager=" + cacheManager + ",Cache=" + cache);
+        }
+        catch (MalformedObjectNameException e) {
+            return null;
+        }
+    }
+
+    private void entries(
+        String region, String tier, CacheRegionStatistics stats, ToDoubleFunction<CacheRegionStatistics> count
+    ) {
+        // regions without extended statistics answer with a negative sentinel
+        Gauge.builder("hibernate.cache.region.entries", stats, s -> {
+                double value = count.applyAsDouble(s);
+                return value < 0 ? Double.NaN : value;
+            })
+            .tag("region", region)
+            .tag("tier", tier)
+            .register(registry);
+    }
+}
@@ -0,0 +1,99 @@
+package com.cache_test.cache_test.metrics;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caffeine statistics recorded straight into Micrometer, so loads land in a latency histogram instead
+ * of the single running total that Caffeine keeps itself.
+ */
+class MeteredStatsCounter implements StatsCounter {
+
+    private final MeterRegistry registry;
+
+    private final String cacheName;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    private final Timer loadSuccess;
+
+    private final Timer loadFailure;
+
+    private final Counter evictions;
+
+    private final LongAdder evictionWeight = new LongAdder();
+
+    MeteredStatsCounter(MeterRegistry registry, String cacheName) {
+        this.registry = registry;
+        this.cacheName = cacheName;
+        this.hits = gets("hit");
+        this.misses = gets("miss");
+        this.loadSuccess = loads("success");
+        this.loadFailure = loads("failure");
+        // tagged like the cache.evictions of Micrometer's binders, so without the removal cause
+        this.evictions = Counter.builder("cache.evictions")
+            .tag("cache", cacheName)
+            .register(registry);
+    }
+
+    @Override
+    public void recordHits(int count) {
+        hits.increment(count);
+    }
+
+    @Override
+    public void recordMisses(int count) {
+        misses.increment(count);
+    }
+
+    @Override
+    public void recordLoadSuccess(long loadTime) {
+        loadSuccess.record(loadTime, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordLoadFailure(long loadTime) {
+        loadFailure.record(loadTime, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordEviction(int weight, RemovalCause cause) {
+        evictions.increment();
+        evictionWeight.add(weight);
+    }
+
+    @Override
+    public CacheStats snapshot() {
+        return CacheStats.of(
+            (long) hits.count(), (long) misses.count(),
+            loadSuccess.count(), loadFailure.count(),
+            (long) (loadSuccess.totalTime(TimeUnit.NANOSECONDS) + loadFailure.totalTime(TimeUnit.NANOSECONDS)),
+            (long) evictions.count(), evictionWeight.sum()
+        );
+    }
+
+    private Counter gets(String result) {
+        return Counter.builder("cache.gets")
+            .tag("cache", cacheName)
+            .tag("result", result)
+            .register(registry);
+    }
+
+    private Timer loads(String result) {
+        return Timer.builder("cache.load")
+            .tag("cache", cacheName)
+            .tag("result", result)
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .publishPercentileHistogram()
+            .register(registry);
+    }
+}
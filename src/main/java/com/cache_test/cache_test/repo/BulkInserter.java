@@ -0,0 +1,53 @@
+package com.cache_test.cache_test.repo;
+
+import com.cache_test.cache_test.config.BulkProperties;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Inserts rows in chunks of {@link BulkProperties#getChunkSize()}, one transaction per chunk. Ids come from
+ * pooled sequences, so Hibernate can group the inserts into JDBC batches. A failed chunk rolls back on its
+ * own; the chunks before it stay committed.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+class BulkInserter {
+
+    private final EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final BulkProperties bulkProperties;
+
+    /**
+     * @param prepare turns a request row into an entity that can be persisted
+     * @return the number of rows inserted
+     */
+    <T> int insert(List<T> rows, Consumer<T> prepare) {
+        int chunkSize = bulkProperties.getChunkSize();
+        for (int from = 0; from < rows.size(); from += chunkSize) {
+            List<T> chunk = rows.subList(from, Math.min(from + chunkSize, rows.size()));
+            transactionTemplate.executeWithoutResult(status -> {
+                // bulk rows are rarely read right away, keep them from pushing hot entries out of L2
+                entityManager.unwrap(Session.class).setCacheMode(CacheMode.IGNORE);
+                for (T row : chunk) {
+                    prepare.accept(row);
+                    entityManager.persist(row);
+                }
+                entityManager.flush();
+                entityManager.clear();
+            });
+            log.debug("Inserted rows {} to {}", from, from + chunk.size());
+        }
+        return rows.size();
+    }
+}
@@ -0,0 +1,59 @@
+package com.cache_test.cache_test.repo;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.Cache;
+import org.hibernate.cache.spi.CacheImplementor;
+import org.hibernate.cache.spi.TimestampsCache;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.query.NativeQuery;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Consumer;
+
+/**
+ * Single-row native statements that keep the second-level cache instead of emptying it. Hibernate cleans
+ * up after a bulk statement by evicting the whole L2 region of every entity and collection on its tables,
+ * and after a native statement that declares no query space, of every table. These statements declare a
+ * space nothing is mapped to, so Hibernate evicts nothing, and the caller names the entries it changed.
+ */
+final class NativeStatements {
+
+    private static final String UNMAPPED_SPACE = "native_row_statement";
+
+    private NativeStatements() {
+    }
+
+    static NativeQuery<?> create(EntityManager entityManager, String sql) {
+        return entityManager.createNativeQuery(sql)
+            .unwrap(NativeQuery.class)
+            .addSynchronizedQuerySpace(UNMAPPED_SPACE);
+    }
+
+    /**
+     * Marks the cached query results over {@code table} stale and applies {@code evictions} to the L2 cache,
+     * right away and again once the transaction has completed, as Hibernate does for its bulk statements.
+     */
+    static void invalidate(EntityManager entityManager, String table, Consumer<Cache> evictions) {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        CacheImplementor cache = session.getFactory().getCache();
+        TimestampsCache timestamps = cache.getTimestampsCache();
+        String[] spaces = {table};
+        timestamps.preInvalidate(spaces, session);
+        evictions.accept(cache);
+        Runnable completion = () -> {
+            timestamps.invalidate(spaces, session);
+            evictions.accept(cache);
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            completion.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                completion.run();
+            }
+        });
+    }
+}
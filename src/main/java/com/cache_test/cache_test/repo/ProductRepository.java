@@ -1,22 +1,47 @@
 package com.cache_test.cache_test.repo;
 
+import com.cache_test.cache_test.dto.ProductView;
 import com.cache_test.cache_test.entity.Product;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository
+    extends JpaRepository<Product, Long>, ProductStreamRepository, ProductUpdateRepository {
 
     List<Product> findByUserId(Long userId);
 
+    @Query("SELECT new com.cache_test.cache_test.dto.ProductView(p.id, p.name, p.description, p.price, p.user.id) "
+        + "FROM Product p WHERE p.id = :id")
+    Optional<ProductView> findViewById(@Param("id") Long id);
+
+    @Query("SELECT new com.cache_test.cache_test.dto.ProductView(p.id, p.name, p.description, p.price, p.user.id) "
+        + "FROM Product p WHERE p.user.id = :userId")
+    List<ProductView> findViewsByUserId(@Param("userId") Long userId);
+
     @Query("SELECT p FROM Product p WHERE p.price > :price")
     List<Product> findProductsWithPriceGreaterThan(@Param("price") BigDecimal price);
 
+    List<Product> findAllByOrderByPriceAsc();
+
     @Query("SELECT p FROM Product p JOIN FETCH p.user")
     List<Product> findAllWithUser();
+
+    @Query("SELECT p FROM Product p JOIN FETCH p.user WHERE p.id > :afterId ORDER BY p.id")
+    List<Product> findPageWithUser(@Param("afterId") Long afterId, Limit limit);
+
+    @Query("SELECT p.id FROM Product p")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<Long> streamIds();
 }
@@ -1,17 +1,41 @@
 package com.cache_test.cache_test.repo;
 
+import com.cache_test.cache_test.cache.AsyncGet;
+import com.cache_test.cache_test.cache.CacheKey;
+import com.cache_test.cache_test.cache.EntityChangePublisher;
+import com.cache_test.cache_test.cache.ExistenceFilter;
+import com.cache_test.cache_test.cache.MultiGet;
+import com.cache_test.cache_test.cache.ProductChangedEvent;
+import com.cache_test.cache_test.cache.QueryKind;
+import com.cache_test.cache_test.cache.RangeQueryCache;
+import com.cache_test.cache_test.config.StreamingProperties;
+import com.cache_test.cache_test.dto.BulkInsertResult;
+import com.cache_test.cache_test.dto.KeysetPage;
+import com.cache_test.cache_test.dto.ProductView;
 import com.cache_test.cache_test.entity.Product;
+import com.cache_test.cache_test.entity.Users;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -20,40 +44,249 @@ public class ProductService {
 
     private final ProductRepository productRepository;
 
-    @Cacheable(value = "products", key = "#id")
+    private final RangeQueryCache rangeQueryCache;
+
+    private final StreamingProperties streamingProperties;
+
+    private final EntityManager entityManager;
+
+    private final CacheManager cacheManager;
+
+    private final BulkInserter bulkInserter;
+
+    private final ProductWriteBehind writeBehind;
+
+    private final Executor asyncLookupExecutor;
+
+    private final EntityChangePublisher changePublisher;
+
+    private final ExistenceFilter existenceFilter;
+
+    // the async variants load misses through the proxy, so they share the cached methods' single flight
+    @Lazy
+    private final ProductService self;
+
+    @Cacheable(value = "products", sync = true)
     public Optional<Product> findById(Long id) {
         log.info("Fetching product with id: {}", id);
+        Optional<Product> queued = writeBehind.pending(id);
+        if (queued.isPresent() || !existenceFilter.mightContainProduct(id)) {
+            return queued;
+        }
         return productRepository.findById(id);
     }
 
-    @Cacheable(value = "products", key = "'user_' + #userId")
+    @Cacheable(value = "products", sync = true)
     public List<Product> findByUserId(Long userId) {
         log.info("Fetching products for user: {}", userId);
         return productRepository.findByUserId(userId);
     }
 
-    @CachePut(value = "products", key = "#result.id")
-    @Transactional
+    @Cacheable(value = "products", sync = true)
+    public Optional<ProductView> findViewById(Long id) {
+        log.info("Fetching product view with id: {}", id);
+        if (!existenceFilter.mightContainProduct(id)) {
+            return Optional.empty();
+        }
+        return productRepository.findViewById(id);
+    }
+
+    @Cacheable(value = "products", sync = true)
+    public List<ProductView> findViewsByUserId(Long userId) {
+        log.info("Fetching product views for user: {}", userId);
+        return productRepository.findViewsByUserId(userId);
+    }
+
+    /**
+     * Completes on the calling thread when the product is cached; otherwise {@link #findById} runs on the
+     * async lookup pool. The other {@code *Async} methods work the same way.
+     */
+    public CompletableFuture<Optional<Product>> findByIdAsync(Long id) {
+        return AsyncGet.getOptional(
+            cacheManager.getCache("products"), CacheKey.productById(id), () -> self.findById(id), asyncLookupExecutor
+        );
+    }
+
+    public CompletableFuture<List<Product>> findByUserIdAsync(Long userId) {
+        return AsyncGet.get(
+            cacheManager.getCache("products"), CacheKey.of(QueryKind.PRODUCTS_BY_USER, userId),
+            () -> self.findByUserId(userId), asyncLookupExecutor
+        );
+    }
+
+    public CompletableFuture<Optional<ProductView>> findViewByIdAsync(Long id) {
+        return AsyncGet.getOptional(
+            cacheManager.getCache("products"), CacheKey.of(QueryKind.PRODUCT_VIEW_BY_ID, id),
+            () -> self.findViewById(id), asyncLookupExecutor
+        );
+    }
+
+    public CompletableFuture<List<ProductView>> findViewsByUserIdAsync(Long userId) {
+        return AsyncGet.get(
+            cacheManager.getCache("products"), CacheKey.of(QueryKind.PRODUCT_VIEWS_BY_USER, userId),
+            () -> self.findViewsByUserId(userId), asyncLookupExecutor
+        );
+    }
+
+    /**
+     * Always runs on the async lookup pool: the range cache may have to load or merge changed rows first.
+     */
+    public CompletableFuture<List<Product>> findProductsWithPriceGreaterThanAsync(BigDecimal price) {
+        return CompletableFuture.supplyAsync(() -> findProductsWithPriceGreaterThan(price), asyncLookupExecutor);
+    }
+
+    /**
+     * With write-behind enabled, updates of existing products are cached right away and written later in
+     * batches, see {@link ProductWriteBehind}; until then, lists and views of the product still show the
+     * old state. New products are always inserted right away, since they need their id, and so is a
+     * product whose id the cached existence check of {@link #findById} does not find.
+     */
+    @CachePut(value = "products", key = "T(com.cache_test.cache_test.cache.CacheKey).productById(#result.id)")
     public Product save(Product product) {
         log.info("Saving product: {}", product.getName());
+        if (writeBehind.isEnabled() && product.getId() != null && self.findById(product.getId()).isPresent()) {
+            writeBehind.enqueue(product);
+            return product;
+        }
         return productRepository.save(product);
     }
 
-    @CacheEvict(value = "products", key = "#id")
+    /**
+     * Inserts new products in JDBC batches, see {@link BulkInserter}. Ids in the request are ignored; the
+     * owner is referenced by id only, without loading it.
+     */
+    public BulkInsertResult saveAll(List<Product> products) {
+        log.info("Bulk inserting {} products", products.size());
+        return new BulkInsertResult(bulkInserter.insert(products, product -> {
+            product.setId(null);
+            if (product.getUser() != null) {
+                product.setUser(entityManager.getReference(Users.class, product.getUser().getId()));
+            }
+        }));
+    }
+
+    /**
+     * Updates an existing product with one {@code UPDATE}, without reading it first; the owner is
+     * referenced by id. When {@code product} carries the version it was read at, a concurrent update makes
+     * this fail with an {@link OptimisticLockingFailureException}; on success {@code product} carries the
+     * new version. In write-behind mode the update is queued instead, after a cached existence check.
+     * Only the product's own L2 entries are evicted, see {@link ProductUpdateRepository}.
+     *
+     * @return the number of rows updated, 0 when there is no such product
+     */
+    @Transactional
+    public int updateIfExists(Product product) {
+        if (writeBehind.isEnabled()) {
+            if (self.findById(product.getId()).isEmpty()) {
+                return 0;
+            }
+            self.save(product);
+            return 1;
+        }
+        log.info("Updating product with id: {}", product.getId());
+        Long userId = product.getUser() != null ? product.getUser().getId() : null;
+        int updated = productRepository.updateIfExists(
+            product.getId(), product.getName(), product.getDescription(), product.getPrice(), userId,
+            product.getVersion()
+        );
+        if (updated == 0) {
+            // only a failed versioned update pays for telling a conflict from a missing row
+            if (product.getVersion() != null && productRepository.existsById(product.getId())) {
+                throw new OptimisticLockingFailureException("Product " + product.getId() + " was updated concurrently");
+            }
+            return 0;
+        }
+        if (product.getVersion() != null) {
+            product.setVersion(product.getVersion() + 1);
+        }
+        changePublisher.publishAfterCommit(new ProductChangedEvent(product.getId(), userId, product.getPrice(), false));
+        return updated;
+    }
+
+    /**
+     * Deletes a product with one {@code DELETE}, without reading it first.
+     *
+     * @return the number of rows deleted, 0 when there is no such product
+     */
+    @Transactional
+    public int deleteIfExists(Long id) {
+        log.info("Deleting product with id: {}", id);
+        int deleted = productRepository.deleteByIdReturningCount(id);
+        if (deleted > 0) {
+            changePublisher.publishAfterCommit(new ProductChangedEvent(id, null, null, true));
+        }
+        return deleted;
+    }
+
+    @CacheEvict("products")
     @Transactional
     public void deleteById(Long id) {
         log.info("Deleting product with id: {}", id);
         productRepository.deleteById(id);
     }
 
-    @Cacheable(value = "products", key = "'price_gt_' + #price")
     public List<Product> findProductsWithPriceGreaterThan(BigDecimal price) {
         log.info("Fetching products with price greater than: {}", price);
-        return productRepository.findProductsWithPriceGreaterThan(price);
+        return rangeQueryCache.findProductsWithPriceGreaterThan(price);
     }
 
     public List<Product> findAllWithUser() {
         log.info("Fetching all products with user");
         return productRepository.findAllWithUser();
     }
+
+    @Transactional(readOnly = true)
+    public KeysetPage<Product> findPageWithUser(Long afterId, Integer size) {
+        int limit = streamingProperties.pageSize(size);
+        log.info("Fetching products with user after id {}, page size {}", afterId, limit);
+        List<Product> products = productRepository.findPageWithUser(afterId, Limit.of(limit));
+        Long nextCursor = products.size() == limit ? products.get(limit - 1).getId() : null;
+        return new KeysetPage<>(products, nextCursor);
+    }
+
+    @Transactional(readOnly = true)
+    public void streamAllWithUser(Consumer<Product> action) {
+        int fetchSize = streamingProperties.getFetchSize();
+        log.info("Streaming all products with user, fetch size {}", fetchSize);
+        try (Stream<Product> products = productRepository.streamAllWithUser(fetchSize)) {
+            int[] streamed = {0};
+            products.forEach(product -> {
+                action.accept(product);
+                if (++streamed[0] % fetchSize == 0) {
+                    entityManager.clear();
+                }
+            });
+        }
+    }
+
+    /**
+     * Looks up many Product at once. Hits are served from the "products" cache; the misses are checked like
+     * in {@link #findById}, queued updates first and then the existence filter, and the rest go through
+     * one Hibernate multi-load, which checks the second-level cache before issuing a single IN query.
+     */
+    @Transactional(readOnly = true)
+    public List<Product> findAllById(List<Long> ids) {
+        log.info("Fetching {} products by id", ids.size());
+        return MultiGet.load(
+            cacheManager.getCache("products"), ids, CacheKey::productById, this::loadMisses, Product::getId
+        );
+    }
+
+    private List<Product> loadMisses(List<Long> ids) {
+        List<Product> found = new ArrayList<>();
+        List<Long> toLoad = new ArrayList<>();
+        for (Long id : ids) {
+            Optional<Product> queued = writeBehind.pending(id);
+            if (queued.isPresent()) {
+                found.add(queued.get());
+            }
+            else if (existenceFilter.mightContainProduct(id)) {
+                toLoad.add(id);
+            }
+        }
+        if (!toLoad.isEmpty()) {
+            found.addAll(entityManager.unwrap(Session.class).byMultipleIds(Product.class).multiLoad(toLoad));
+        }
+        return found;
+    }
 }
@@ -0,0 +1,10 @@
+package com.cache_test.cache_test.repo;
+
+import com.cache_test.cache_test.entity.Product;
+
+import java.util.stream.Stream;
+
+public interface ProductStreamRepository {
+
+    Stream<Product> streamAllWithUser(int fetchSize);
+}
@@ -0,0 +1,22 @@
+package com.cache_test.cache_test.repo;
+
+import com.cache_test.cache_test.entity.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.jpa.HibernateHints;
+
+import java.util.stream.Stream;
+
+class ProductStreamRepositoryImpl implements ProductStreamRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Stream<Product> streamAllWithUser(int fetchSize) {
+        return entityManager.createQuery("SELECT p FROM Product p JOIN FETCH p.user ORDER BY p.id", Product.class)
+            .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+            .setHint(HibernateHints.HINT_READ_ONLY, true)
+            .getResultStream();
+    }
+}
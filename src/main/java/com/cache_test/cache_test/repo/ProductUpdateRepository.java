@@ -0,0 +1,20 @@
+package com.cache_test.cache_test.repo;
+
+import java.math.BigDecimal;
+
+/**
+ * Single-statement writes of products that evict only the L2 entries of the rows they change, see
+ * {@link NativeStatements}.
+ */
+public interface ProductUpdateRepository {
+
+    /**
+     * Updates an existing product in one statement, without loading it. A non-null {@code version} only
+     * matches a row of that version.
+     *
+     * @return the number of rows updated
+     */
+    int updateIfExists(Long id, String name, String description, BigDecimal price, Long userId, Long version);
+
+    int deleteByIdReturningCount(Long id);
+}
@@ -0,0 +1,58 @@
+package com.cache_test.cache_test.repo;
+
+import com.cache_test.cache_test.entity.Product;
+import com.cache_test.cache_test.entity.Users;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+
+class ProductUpdateRepositoryImpl implements ProductUpdateRepository {
+
+    private static final String USER_PRODUCTS = Users.class.getName() + ".products";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public int updateIfExists(Long id, String name, String description, BigDecimal price, Long userId, Long version) {
+        String sql = "UPDATE product SET name = :name, description = :description, price = :price, "
+            + "user_id = :userId, version = version + 1 WHERE id = :id"
+            + (version != null ? " AND version = :version" : "");
+        var statement = NativeStatements.create(entityManager, sql)
+            .setParameter("name", name, String.class)
+            .setParameter("description", description, String.class)
+            .setParameter("price", price, BigDecimal.class)
+            .setParameter("userId", userId, Long.class)
+            .setParameter("id", id, Long.class);
+        if (version != null) {
+            statement.setParameter("version", version, Long.class);
+        }
+        int updated = statement.executeUpdate();
+        if (updated > 0) {
+            // the previous owner is not known without reading the row, so every owner's product list goes
+            NativeStatements.invalidate(entityManager, "product", cache -> {
+                cache.evictEntityData(Product.class, id);
+                cache.evictCollectionData(USER_PRODUCTS);
+            });
+        }
+        return updated;
+    }
+
+    @Override
+    @Transactional
+    public int deleteByIdReturningCount(Long id) {
+        int deleted = NativeStatements.create(entityManager, "DELETE FROM product WHERE id = :id")
+            .setParameter("id", id, Long.class)
+            .executeUpdate();
+        if (deleted > 0) {
+            NativeStatements.invalidate(entityManager, "product", cache -> {
+                cache.evictEntityData(Product.class, id);
+                cache.evictCollectionData(USER_PRODUCTS);
+            });
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,280 @@
+package com.cache_test.cache_test.repo;
+
+import com.cache_test.cache_test.cache.CacheKey;
+import com.cache_test.cache_test.cache.ProductChangedEvent;
+import com.cache_test.cache_test.config.WriteBehindProperties;
+import com.cache_test.cache_test.entity.Product;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Queue of product updates for the write-behind mode of {@link ProductService#save}, coalesced per
+ * product and written on a schedule in batches, one transaction each; a full queue makes the caller write a
+ * batch itself. An update dropped because it kept failing or its product was deleted has its cached state
+ * evicted and is reported to the {@link WriteBehindListener}s.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductWriteBehind {
+
+    private final EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final WriteBehindProperties properties;
+
+    private final TaskScheduler taskScheduler;
+
+    private final ObjectProvider<WriteBehindListener> listeners;
+
+    private final MeterRegistry registry;
+
+    private final CacheManager cacheManager;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    // guarded by queueLock; insertion order is flush order
+    private final Map<Long, Pending> pending = new LinkedHashMap<>();
+
+    private final ReentrantLock queueLock = new ReentrantLock();
+
+    // held while writing; locks rather than monitors, so a waiting virtual thread does not pin its carrier
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private Counter flushed;
+
+    private Counter failed;
+
+    private record Pending(Product product, int attempts) {
+    }
+
+    @PostConstruct
+    void start() {
+        Gauge.builder("write.behind.pending", this, ProductWriteBehind::size).register(registry);
+        flushed = Counter.builder("write.behind.writes").tag("result", "flushed").register(registry);
+        failed = Counter.builder("write.behind.writes").tag("result", "failed").register(registry);
+        taskScheduler.scheduleWithFixedDelay(this::flushQueued, properties.getFlushInterval());
+    }
+
+    @PreDestroy
+    void stop() {
+        int written = flushAll();
+        if (written > 0) {
+            log.info("Flushed {} queued product updates on shutdown", written);
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public int size() {
+        queueLock.lock();
+        try {
+            return pending.size();
+        }
+        finally {
+            queueLock.unlock();
+        }
+    }
+
+    /**
+     * The queued, not yet written state of a product, which is newer than the database.
+     */
+    public Optional<Product> pending(Long id) {
+        queueLock.lock();
+        try {
+            Pending queued = pending.get(id);
+            return queued == null ? Optional.empty() : Optional.of(queued.product());
+        }
+        finally {
+            queueLock.unlock();
+        }
+    }
+
+    void enqueue(Product product) {
+        while (!offer(product)) {
+            log.debug("Write-behind queue full, writing a batch on the caller's thread");
+            writeBatch();
+        }
+        listeners.orderedStream().forEach(listener -> listener.onQueued(product));
+    }
+
+    /**
+     * Writes everything queued, including updates queued while it runs.
+     *
+     * @return the number of updates written
+     */
+    public int flushAll() {
+        int total = 0;
+        int written;
+        while ((written = writeBatch()) > 0) {
+            total += written;
+        }
+        return total;
+    }
+
+    // writes what was queued when the tick started; retries go to the next tick
+    private void flushQueued() {
+        try {
+            int due = size();
+            while (due > 0) {
+                int written = writeBatch();
+                if (written == 0) {
+                    break;
+                }
+                due -= written;
+            }
+        }
+        catch (RuntimeException e) {
+            log.error("Write-behind flush failed", e);
+        }
+    }
+
+    private boolean offer(Product product) {
+        queueLock.lock();
+        try {
+            Pending queued = pending.get(product.getId());
+            if (queued == null && pending.size() >= properties.getCapacity()) {
+                return false;
+            }
+            pending.put(product.getId(), new Pending(product, 0));
+            return true;
+        }
+        finally {
+            queueLock.unlock();
+        }
+    }
+
+    private List<Pending> take(int max) {
+        queueLock.lock();
+        try {
+            List<Pending> batch = new ArrayList<>(Math.min(max, pending.size()));
+            Iterator<Pending> it = pending.values().iterator();
+            while (it.hasNext() && batch.size() < max) {
+                batch.add(it.next());
+                it.remove();
+            }
+            return batch;
+        }
+        finally {
+            queueLock.unlock();
+        }
+    }
+
+    // puts a failed update back unless a newer one was queued meanwhile
+    private boolean requeue(Pending failedUpdate) {
+        queueLock.lock();
+        try {
+            return pending.putIfAbsent(failedUpdate.product().getId(), failedUpdate) == null;
+        }
+        finally {
+            queueLock.unlock();
+        }
+    }
+
+    private int writeBatch() {
+        writeLock.lock();
+        try {
+            List<Pending> batch = take(properties.getBatchSize());
+            if (batch.isEmpty()) {
+                return 0;
+            }
+            try {
+                write(batch);
+            }
+            catch (RuntimeException e) {
+                log.warn("Write-behind batch of {} updates failed, retrying them one by one: {}",
+                    batch.size(), e.getMessage());
+                for (Pending update : batch) {
+                    retry(update);
+                }
+            }
+            return batch.size();
+        }
+        finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void retry(Pending update) {
+        try {
+            write(List.of(update));
+        }
+        catch (RuntimeException e) {
+            Pending next = new Pending(update.product(), update.attempts() + 1);
+            if (next.attempts() < properties.getMaxAttempts() && requeue(next)) {
+                log.warn("Write-behind update of product {} failed, will retry: {}",
+                    update.product().getId(), e.getMessage());
+                return;
+            }
+            if (next.attempts() >= properties.getMaxAttempts()) {
+                log.error("Giving up write-behind update of product {}", update.product().getId(), e);
+                failed.increment();
+                discard(update.product(), false);
+                listeners.orderedStream().forEach(listener -> listener.onFailed(update.product(), e));
+            }
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        List<Product> products = batch.stream().map(Pending::product).toList();
+        List<Product> deleted = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            // one IN query loads the current rows, so the merges below do not select one by one
+            entityManager.unwrap(Session.class)
+                .byMultipleIds(Product.class)
+                .multiLoad(products.stream().map(Product::getId).toList());
+            for (Product product : products) {
+                Product current = entityManager.find(Product.class, product.getId());
+                if (current == null) {
+                    log.info("Dropping write-behind update of product {}, which was deleted", product.getId());
+                    deleted.add(product);
+                    continue;
+                }
+                // a copy, since the queued instance is also the one cached and the caller's
+                Long version = product.getVersion() != null ? product.getVersion() : current.getVersion();
+                entityManager.merge(new Product(
+                    product.getId(), product.getName(), product.getDescription(), product.getPrice(),
+                    product.getUser(), version
+                ));
+            }
+        });
+        deleted.forEach(product -> discard(product, true));
+        flushed.increment(products.size() - deleted.size());
+        listeners.orderedStream().forEach(listener -> listener.onFlushed(products));
+    }
+
+    // evicts the state cached for an update that was not written, and whatever was derived from it
+    private void discard(Product product, boolean deleted) {
+        Cache cache = cacheManager.getCache("products");
+        if (cache != null) {
+            cache.evict(CacheKey.productById(product.getId()));
+        }
+        Long userId = product.getUser() != null ? product.getUser().getId() : null;
+        eventPublisher.publishEvent(new ProductChangedEvent(product.getId(), userId, null, deleted));
+    }
+}
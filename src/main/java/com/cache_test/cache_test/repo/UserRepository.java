@@ -1,22 +1,51 @@
 package com.cache_test.cache_test.repo;
 
+import com.cache_test.cache_test.dto.UserView;
 import com.cache_test.cache_test.entity.Users;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface UserRepository extends JpaRepository<Users, Long> {
+public interface UserRepository extends JpaRepository<Users, Long>, UserStreamRepository, UserUpdateRepository {
 
     Optional<Users> findByEmail(String email);
 
+    @Query("SELECT new com.cache_test.cache_test.dto.UserView(u.id, u.name, u.email, u.age) FROM Users u "
+        + "WHERE u.id = :id")
+    Optional<UserView> findViewById(@Param("id") Long id);
+
+    @Query("SELECT new com.cache_test.cache_test.dto.UserView(u.id, u.name, u.email, u.age) FROM Users u "
+        + "WHERE u.email = :email")
+    Optional<UserView> findViewByEmail(@Param("email") String email);
+
     @Query("SELECT u FROM Users u WHERE u.age > :age")
     List<Users> findUsersOlderThan(@Param("age") Integer age);
 
+    List<Users> findByAgeNotNullOrderByAgeAsc();
+
     @Query("SELECT u FROM Users u JOIN FETCH u.products")
     List<Users> findAllWithProducts();
-}
\ No newline at end of file
+
+    @Query("SELECT u.id FROM Users u WHERE u.id > :afterId AND u.products IS NOT EMPTY ORDER BY u.id")
+    List<Long> findIdsWithProductsAfter(@Param("afterId") Long afterId, Limit limit);
+
+    @Query("SELECT DISTINCT u FROM Users u JOIN FETCH u.products WHERE u.id IN :ids ORDER BY u.id")
+    List<Users> findAllWithProductsByIdIn(@Param("ids") List<Long> ids);
+
+    @Query("SELECT u.id, u.email FROM Users u")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<Object[]> streamIdsAndEmails();
+
+    @Query("SELECT p.id FROM Product p WHERE p.user.id = :userId")
+    List<Long> findProductIds(@Param("userId") Long userId);
+}
@@ -1,16 +1,39 @@
 package com.cache_test.cache_test.repo;
 
+import com.cache_test.cache_test.cache.AsyncGet;
+import com.cache_test.cache_test.cache.CacheKey;
+import com.cache_test.cache_test.cache.EntityChangePublisher;
+import com.cache_test.cache_test.cache.ExistenceFilter;
+import com.cache_test.cache_test.cache.MultiGet;
+import com.cache_test.cache_test.cache.QueryKind;
+import com.cache_test.cache_test.cache.ProductChangedEvent;
+import com.cache_test.cache_test.cache.RangeQueryCache;
+import com.cache_test.cache_test.cache.UserChangedEvent;
+import com.cache_test.cache_test.config.StreamingProperties;
+import com.cache_test.cache_test.dto.BulkInsertResult;
+import com.cache_test.cache_test.dto.KeysetPage;
+import com.cache_test.cache_test.dto.UserView;
 import com.cache_test.cache_test.entity.Users;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -19,41 +42,217 @@ public class UserService {
 
     private final UserRepository userRepository;
 
-    @Cacheable(value = "users", key = "#id")
+    private final RangeQueryCache rangeQueryCache;
+
+    private final StreamingProperties streamingProperties;
+
+    private final EntityManager entityManager;
+
+    private final CacheManager cacheManager;
+
+    private final BulkInserter bulkInserter;
+
+    private final Executor asyncLookupExecutor;
+
+    private final EntityChangePublisher changePublisher;
+
+    private final ExistenceFilter existenceFilter;
+
+    // the async variants load misses through the proxy, so they share the cached methods' single flight
+    @Lazy
+    private final UserService self;
+
+    @Cacheable(value = "users", sync = true)
     public Optional<Users> findById(Long id) {
 
         log.info("Fetching Users with id: {}", id);
+        if (!existenceFilter.mightContainUser(id)) {
+            return Optional.empty();
+        }
         return userRepository.findById(id);
     }
 
-    @Cacheable(value = "users", key = "#email")
+    @Cacheable(value = "users", sync = true)
     public Optional<Users> findByEmail(String email) {
         log.info("Fetching Users with email: {}", email);
+        if (!existenceFilter.mightContainEmail(email)) {
+            return Optional.empty();
+        }
         return userRepository.findByEmail(email);
     }
 
-    @CachePut(value = "users", key = "#result.id")
+    @Cacheable(value = "users", sync = true)
+    public Optional<UserView> findViewById(Long id) {
+        log.info("Fetching Users view with id: {}", id);
+        if (!existenceFilter.mightContainUser(id)) {
+            return Optional.empty();
+        }
+        return userRepository.findViewById(id);
+    }
+
+    @Cacheable(value = "users", sync = true)
+    public Optional<UserView> findViewByEmail(String email) {
+        log.info("Fetching Users view with email: {}", email);
+        if (!existenceFilter.mightContainEmail(email)) {
+            return Optional.empty();
+        }
+        return userRepository.findViewByEmail(email);
+    }
+
+    /**
+     * Completes on the calling thread when the user is cached; otherwise {@link #findById} runs on the
+     * async lookup pool. The other {@code *Async} methods work the same way.
+     */
+    public CompletableFuture<Optional<Users>> findByIdAsync(Long id) {
+        return AsyncGet.getOptional(
+            cacheManager.getCache("users"), CacheKey.userById(id), () -> self.findById(id), asyncLookupExecutor
+        );
+    }
+
+    public CompletableFuture<Optional<Users>> findByEmailAsync(String email) {
+        return AsyncGet.getOptional(
+            cacheManager.getCache("users"), CacheKey.of(QueryKind.USER_BY_EMAIL, email),
+            () -> self.findByEmail(email), asyncLookupExecutor
+        );
+    }
+
+    public CompletableFuture<Optional<UserView>> findViewByIdAsync(Long id) {
+        return AsyncGet.getOptional(
+            cacheManager.getCache("users"), CacheKey.of(QueryKind.USER_VIEW_BY_ID, id),
+            () -> self.findViewById(id), asyncLookupExecutor
+        );
+    }
+
+    @CachePut(value = "users", key = "T(com.cache_test.cache_test.cache.CacheKey).userById(#result.id)")
     @Transactional
     public Users save(Users users) {
         log.info("Saving Users: {}", users.getName());
         return userRepository.save(users);
     }
 
-    @CacheEvict(value = "users", key = "#id")
+    /**
+     * Inserts new users in JDBC batches, see {@link BulkInserter}. Ids in the request are ignored and so are
+     * nested products.
+     */
+    public BulkInsertResult saveAll(List<Users> users) {
+        log.info("Bulk inserting {} Users", users.size());
+        return new BulkInsertResult(bulkInserter.insert(users, user -> {
+            user.setId(null);
+            user.setProducts(null);
+        }));
+    }
+
+    /**
+     * Updates the name, email and age of an existing user with one {@code UPDATE}, without reading it
+     * first. When {@code user} carries the version it was read at, a concurrent update makes this fail
+     * with an {@link OptimisticLockingFailureException}; on success {@code user} carries the new version.
+     * Native statements bypass the Hibernate events, so the caches are invalidated explicitly after commit,
+     * see {@link UserUpdateRepository}.
+     *
+     * @return the number of rows updated, 0 when there is no such user
+     */
+    @Transactional
+    public int updateIfExists(Users user) {
+        log.info("Updating Users with id: {}", user.getId());
+        existenceFilter.addUser(user.getId(), user.getEmail());
+        int updated = userRepository.updateIfExists(
+            user.getId(), user.getName(), user.getEmail(), user.getAge(), user.getVersion()
+        );
+        if (updated == 0) {
+            // only a failed versioned update pays for telling a conflict from a missing row
+            if (user.getVersion() != null && userRepository.existsById(user.getId())) {
+                throw new OptimisticLockingFailureException("Users " + user.getId() + " was updated concurrently");
+            }
+            return 0;
+        }
+        if (user.getVersion() != null) {
+            user.setVersion(user.getVersion() + 1);
+        }
+        changePublisher.publishAfterCommit(new UserChangedEvent(user.getId(), user.getEmail(), user.getAge(), false));
+        return updated;
+    }
+
+    /**
+     * Deletes a user and their products without loading them: the ids of the products, which the caches
+     * need, then one {@code DELETE} for the products and one for the user.
+     *
+     * @return the number of users deleted, 0 when there is no such user
+     */
+    @Transactional
+    public int deleteIfExists(Long id) {
+        log.info("Deleting Users with id: {}", id);
+        List<Long> productIds = userRepository.findProductIds(id);
+        if (!productIds.isEmpty()) {
+            userRepository.deleteProducts(id, productIds);
+        }
+        int deleted = userRepository.deleteByIdReturningCount(id);
+        if (deleted > 0) {
+            productIds.forEach(productId ->
+                changePublisher.publishAfterCommit(new ProductChangedEvent(productId, id, null, true)));
+            changePublisher.publishAfterCommit(new UserChangedEvent(id, null, null, true));
+        }
+        return deleted;
+    }
+
+    @CacheEvict("users")
     @Transactional
     public void deleteById(Long id) {
         log.info("Deleting Users with id: {}", id);
         userRepository.deleteById(id);
     }
 
-    @Cacheable(value = "users", key = "'older_than_' + #age")
     public List<Users> findUsersOlderThan(Integer age) {
         log.info("Fetching Users older than: {}", age);
-        return userRepository.findUsersOlderThan(age);
+        return rangeQueryCache.findUsersOlderThan(age);
     }
 
     public List<Users> findAllWithProducts() {
         log.info("Fetching all Users with products");
         return userRepository.findAllWithProducts();
     }
+
+    @Transactional(readOnly = true)
+    public KeysetPage<Users> findPageWithProducts(Long afterId, Integer size) {
+        int limit = streamingProperties.pageSize(size);
+        log.info("Fetching Users with products after id {}, page size {}", afterId, limit);
+        List<Long> ids = userRepository.findIdsWithProductsAfter(afterId, Limit.of(limit));
+        if (ids.isEmpty()) {
+            return new KeysetPage<>(List.of(), null);
+        }
+        Long nextCursor = ids.size() == limit ? ids.get(limit - 1) : null;
+        return new KeysetPage<>(userRepository.findAllWithProductsByIdIn(ids), nextCursor);
+    }
+
+    @Transactional(readOnly = true)
+    public void streamAllWithProducts(Consumer<Users> action) {
+        int fetchSize = streamingProperties.getFetchSize();
+        log.info("Streaming all Users with products, fetch size {}", fetchSize);
+        try (Stream<Users> users = userRepository.streamAllWithProducts(fetchSize)) {
+            users.forEach(user -> {
+                action.accept(user);
+                // cascades to the fetched products, so the session never holds more than one user
+                entityManager.detach(user);
+            });
+        }
+    }
+
+    /**
+     * Looks up many Users at once. Hits are served from the "users" cache; misses the existence filter rules
+     * out are absent, like in {@link #findById}, and the rest go through one Hibernate multi-load, which
+     * checks the second-level cache before issuing a single IN query.
+     */
+    @Transactional(readOnly = true)
+    public List<Users> findAllById(List<Long> ids) {
+        log.info("Fetching {} Users by id", ids.size());
+        return MultiGet.load(
+            cacheManager.getCache("users"), ids, CacheKey::userById,
+            misses -> {
+                List<Long> toLoad = misses.stream().filter(existenceFilter::mightContainUser).toList();
+                return toLoad.isEmpty()
+                    ? List.of()
+                    : entityManager.unwrap(Session.class).byMultipleIds(Users.class).multiLoad(toLoad);
+            },
+            Users::getId
+        );
+    }
 }
@@ -0,0 +1,10 @@
+package com.cache_test.cache_test.repo;
+
+import com.cache_test.cache_test.entity.Users;
+
+import java.util.stream.Stream;
+
+public interface UserStreamRepository {
+
+    Stream<Users> streamAllWithProducts(int fetchSize);
+}
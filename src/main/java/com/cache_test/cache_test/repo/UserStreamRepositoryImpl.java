@@ -0,0 +1,23 @@
+package com.cache_test.cache_test.repo;
+
+import com.cache_test.cache_test.entity.Users;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.jpa.HibernateHints;
+
+import java.util.stream.Stream;
+
+class UserStreamRepositoryImpl implements UserStreamRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Stream<Users> streamAllWithProducts(int fetchSize) {
+        // ordered by the root id so each user's fetched products arrive together
+        return entityManager.createQuery("SELECT u FROM Users u JOIN FETCH u.products ORDER BY u.id", Users.class)
+            .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+            .setHint(HibernateHints.HINT_READ_ONLY, true)
+            .getResultStream();
+    }
+}
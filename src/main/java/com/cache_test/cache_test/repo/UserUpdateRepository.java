@@ -0,0 +1,27 @@
+package com.cache_test.cache_test.repo;
+
+import java.util.Collection;
+
+/**
+ * Single-statement writes of users that evict only the L2 entries of the rows they change, see
+ * {@link NativeStatements}.
+ */
+public interface UserUpdateRepository {
+
+    /**
+     * Updates an existing user in one statement, without loading it. A non-null {@code version} only
+     * matches a row of that version.
+     *
+     * @return the number of rows updated
+     */
+    int updateIfExists(Long id, String name, String email, Integer age, Long version);
+
+    int deleteByIdReturningCount(Long id);
+
+    /**
+     * Deletes the products of a user.
+     *
+     * @param productIds the ids of those products, as read in the same transaction, for the L2 evictions
+     */
+    int deleteProducts(Long userId, Collection<Long> productIds);
+}
@@ -0,0 +1,67 @@
+package com.cache_test.cache_test.repo;
+
+import com.cache_test.cache_test.entity.Product;
+import com.cache_test.cache_test.entity.Users;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+
+class UserUpdateRepositoryImpl implements UserUpdateRepository {
+
+    private static final String USER_PRODUCTS = Users.class.getName() + ".products";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public int updateIfExists(Long id, String name, String email, Integer age, Long version) {
+        String sql = "UPDATE users SET name = :name, email = :email, age = :age, version = version + 1 WHERE id = :id"
+            + (version != null ? " AND version = :version" : "");
+        var statement = NativeStatements.create(entityManager, sql)
+            .setParameter("name", name, String.class)
+            .setParameter("email", email, String.class)
+            .setParameter("age", age, Integer.class)
+            .setParameter("id", id, Long.class);
+        if (version != null) {
+            statement.setParameter("version", version, Long.class);
+        }
+        int updated = statement.executeUpdate();
+        if (updated > 0) {
+            NativeStatements.invalidate(entityManager, "users", cache -> cache.evictEntityData(Users.class, id));
+        }
+        return updated;
+    }
+
+    @Override
+    @Transactional
+    public int deleteByIdReturningCount(Long id) {
+        int deleted = NativeStatements.create(entityManager, "DELETE FROM users WHERE id = :id")
+            .setParameter("id", id, Long.class)
+            .executeUpdate();
+        if (deleted > 0) {
+            NativeStatements.invalidate(entityManager, "users", cache -> {
+                cache.evictEntityData(Users.class, id);
+                cache.evictCollectionData(USER_PRODUCTS, id);
+            });
+        }
+        return deleted;
+    }
+
+    @Override
+    @Transactional
+    public int deleteProducts(Long userId, Collection<Long> productIds) {
+        int deleted = NativeStatements.create(entityManager, "DELETE FROM product WHERE user_id = :userId")
+            .setParameter("userId", userId, Long.class)
+            .executeUpdate();
+        if (deleted > 0) {
+            NativeStatements.invalidate(entityManager, "product", cache -> {
+                productIds.forEach(productId -> cache.evictEntityData(Product.class, productId));
+                cache.evictCollectionData(USER_PRODUCTS, userId);
+            });
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,32 @@
+package com.cache_test.cache_test.repo;
+
+import com.cache_test.cache_test.entity.Product;
+
+import java.util.List;
+
+/**
+ * Durability hooks of {@link ProductWriteBehind}. Queued updates live in memory only, so a crash loses
+ * whatever was not flushed yet; a listener bean can journal them elsewhere and replay what it never
+ * saw flushed. Listeners run on the thread that queues or writes and should not block for long.
+ */
+public interface WriteBehindListener {
+
+    /**
+     * Called before {@link ProductService#save} returns.
+     */
+    default void onQueued(Product product) {
+    }
+
+    /**
+     * Called after the transaction writing these updates committed.
+     */
+    default void onFlushed(List<Product> products) {
+    }
+
+    /**
+     * Called when an update failed {@code app.write-behind.max-attempts} times and was dropped from the
+     * queue.
+     */
+    default void onFailed(Product product, Exception cause) {
+    }
+}
@@ -0,0 +1,5 @@
+-- Users and Product took their ids from identity columns before they moved to pooled sequences, which
+-- ddl-auto: update creates starting at 1. Moves each sequence past the highest existing id, so the next
+-- block Hibernate allocates starts above it; a no-op once the sequence is ahead.
+SELECT setval('users_seq', MAX(id)) FROM users HAVING MAX(id) >= (SELECT last_value FROM users_seq);
+SELECT setval('product_seq', MAX(id)) FROM product HAVING MAX(id) >= (SELECT last_value FROM product_seq);
@@ -1,11 +1,37 @@
 package com.cache_test.cache_test;
 
+import com.cache_test.cache_test.cache.CacheKey;
+import com.cache_test.cache_test.cache.CacheWarmer;
+import com.cache_test.cache_test.cache.ExistenceFilter;
+import com.cache_test.cache_test.cache.KeyActivity;
+import com.cache_test.cache_test.cache.ProductChangedEvent;
+import com.cache_test.cache_test.cache.QueryKind;
+import com.cache_test.cache_test.cache.RangeQueryCache;
+import com.cache_test.cache_test.cache.RepositoryCacheLoader;
+import com.cache_test.cache_test.cache.UserChangedEvent;
+import com.cache_test.cache_test.cache.bus.CacheInvalidationBus;
+import com.cache_test.cache_test.cache.bus.InMemoryInvalidationTransport;
+import com.cache_test.cache_test.cache.bus.InvalidationBatch;
+import com.cache_test.cache_test.cache.bus.InvalidationTransport;
+import com.cache_test.cache_test.cache.codec.CompactValueSerializer;
+import com.cache_test.cache_test.cache.codec.EntityCodec;
+import com.cache_test.cache_test.config.CacheProperties;
+import com.cache_test.cache_test.config.WriteBehindProperties;
+import com.cache_test.cache_test.config.ResponseCacheProperties;
+import com.cache_test.cache_test.controllers.UserController;
+import com.cache_test.cache_test.dto.BulkInsertResult;
+import com.cache_test.cache_test.dto.KeysetPage;
+import com.cache_test.cache_test.dto.ProductView;
+import com.cache_test.cache_test.dto.UserDashboard;
+import com.cache_test.cache_test.dto.UserView;
 import com.cache_test.cache_test.entity.Product;
 import com.cache_test.cache_test.entity.Users;
 import com.cache_test.cache_test.repo.ProductRepository;
 import com.cache_test.cache_test.repo.ProductService;
+import com.cache_test.cache_test.repo.ProductWriteBehind;
 import com.cache_test.cache_test.repo.UserRepository;
 import com.cache_test.cache_test.repo.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 import org.hibernate.Cache;
@@ -14,25 +40,51 @@ import org.hibernate.SessionFactory;
 import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.LoadingCache;
 import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.cache.Caching;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
@@ -65,6 +117,54 @@ class CacheTestApplicationTests {
     @Autowired
     private EntityManagerFactory entityManagerFactory;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private javax.cache.CacheManager jcacheManager;
+
+    @Autowired
+    private CacheProperties cacheProperties;
+
+    @Autowired
+    private CacheWarmer cacheWarmer;
+
+    @Autowired
+    private ResponseCacheProperties responseCacheProperties;
+
+    @Autowired
+    private UserController userController;
+
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private WriteBehindProperties writeBehindProperties;
+
+    @Autowired
+    private ProductWriteBehind productWriteBehind;
+
+    @Autowired
+    private ExistenceFilter existenceFilter;
+
+    @Autowired
+    private KeyActivity keyActivity;
+
+    @Autowired
+    private RangeQueryCache rangeQueryCache;
+
+    @Autowired
+    private RepositoryCacheLoader repositoryCacheLoader;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     private SessionFactory sessionFactory;
 
     private Statistics statistics;
@@ -350,7 +450,7 @@ class CacheTestApplicationTests {
         }
 
         if (springCache != null) {
-            log.info("Spring Cache contains value: {}", springCache.get(firstUserId) != null);
+            log.info("Spring Cache contains value: {}", springCache.get(CacheKey.userById(firstUserId)) != null);
         }
         else {
             log.info("Spring Cache not found");
@@ -645,7 +745,7 @@ class CacheTestApplicationTests {
         org.springframework.cache.Cache springCache = cacheManager.getCache("users");
         assertNotNull(springCache, "Spring cache 'users' should exist");
 
-        Object cachedValue = springCache.get(userId);
+        Object cachedValue = springCache.get(CacheKey.userById(userId));
         assertNotNull(cachedValue, "Cache should contain the user after first call");
 
         assertEquals(firstCall.get(), secondCall.get(), "Second call should return same entity from cache");
@@ -717,7 +817,7 @@ class CacheTestApplicationTests {
         userService.findById(userId);
 
         assertNotNull(
-            cacheManager.getCache("users").get(userId),
+            cacheManager.getCache("users").get(CacheKey.userById(userId)),
             "Method-level @Cacheable should store value in Spring Cache"
         );
     }
@@ -807,4 +907,1030 @@ class CacheTestApplicationTests {
 
         assertTrue(l2HitsAfter >= l2HitsBefore, "L2 cache should reflect merged entity and possibly serve hits");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testSpringCachesAreBounded() {
+        log.info("=== Test Spring caches have a size bound and expiry ===");
+
+        for (String name : List.of("users", "products", "usersList")) {
+            org.springframework.cache.Cache cache = cacheManager.getCache(name);
+            assertNotNull(cache, "Spring cache '" + name + "' should exist");
+
+            var nativeCache = (com.github.benmanes.caffeine.cache.Cache<?, ?>) cache.getNativeCache();
+            assertTrue(nativeCache.policy().eviction().isPresent(), name + " should have an eviction bound");
+            assertTrue(nativeCache.policy().expireAfterWrite().isPresent(), name + " should expire after write");
+        }
+    }
+
+    @Test
+    void testTypedCacheKeysDoNotCollideAcrossQueryShapes() {
+        log.info("=== Test typed cache keys for different query shapes ===");
+
+        Users user = userRepository.findAll().get(0);
+
+        userService.findById(user.getId());
+        userService.findByEmail(user.getEmail());
+        productService.findByUserId(user.getId());
+
+        org.springframework.cache.Cache users = cacheManager.getCache("users");
+        org.springframework.cache.Cache products = cacheManager.getCache("products");
+
+        assertNotNull(users.get(CacheKey.userById(user.getId())), "User by id should be cached");
+        assertNotNull(users.get(CacheKey.of(QueryKind.USER_BY_EMAIL, user.getEmail())), "User by email should be cached");
+        assertNotNull(
+            products.get(CacheKey.of(QueryKind.PRODUCTS_BY_USER, user.getId())), "Products by user should be cached");
+        assertNull(
+            products.get(CacheKey.productById(user.getId())),
+            "A product lookup must not see the entry of a user with the same id"
+        );
+    }
+
+    @Test
+    void testProductWriteEvictsDependentListEntries() {
+        log.info("=== Test dependency-tracked invalidation of derived product lists ===");
+
+        Users owner = userRepository.findAll().stream()
+            .filter(user -> user.getEmail().startsWith("john"))
+            .findFirst()
+            .orElseThrow();
+        Users other = userRepository.findAll().stream()
+            .filter(user -> user.getEmail().startsWith("jane"))
+            .findFirst()
+            .orElseThrow();
+        CacheKey byOwner = CacheKey.of(QueryKind.PRODUCTS_BY_USER, owner.getId());
+        CacheKey byOther = CacheKey.of(QueryKind.PRODUCTS_BY_USER, other.getId());
+
+        int ownedBefore = productService.findByUserId(owner.getId()).size();
+        productService.findByUserId(other.getId());
+
+        org.springframework.cache.Cache products = cacheManager.getCache("products");
+        assertNotNull(products.get(byOwner), "Owner list should be cached");
+        assertNotNull(products.get(byOther), "Other owner list should be cached");
+
+        Product added = new Product();
+        added.setName("Tablet");
+        added.setDescription("Drawing tablet");
+        added.setPrice(new BigDecimal("250.00"));
+        added.setUser(owner);
+        productService.save(added);
+
+        assertNull(products.get(byOwner), "Owner list should be evicted by a new product of that owner");
+        assertNotNull(products.get(byOther), "Lists of other owners should survive");
+        assertEquals(ownedBefore + 1, productService.findByUserId(owner.getId()).size());
+    }
+
+    @Test
+    void testRangeQueriesAreSlicesOfOneSortedIndex() {
+        log.info("=== Test price threshold queries served from the range index ===");
+
+        assertEquals(1, productService.findProductsWithPriceGreaterThan(new BigDecimal("100")).size());
+        long queriesAfterFirstLoad = statistics.getQueryExecutionCount();
+
+        assertEquals(2, productService.findProductsWithPriceGreaterThan(new BigDecimal("10")).size());
+        assertEquals(0, productService.findProductsWithPriceGreaterThan(new BigDecimal("1500.00")).size());
+        assertEquals(1, productService.findProductsWithPriceGreaterThan(new BigDecimal("50")).size());
+        assertEquals(
+            queriesAfterFirstLoad, statistics.getQueryExecutionCount(),
+            "Further thresholds should not query the database"
+        );
+
+        Product added = new Product();
+        added.setName("Tablet");
+        added.setDescription("Drawing tablet");
+        added.setPrice(new BigDecimal("250.00"));
+        added.setUser(userRepository.findAll().get(0));
+        productService.save(added);
+
+        List<Product> pricierThan100 = productService.findProductsWithPriceGreaterThan(new BigDecimal("100"));
+        assertEquals(2, pricierThan100.size(), "A committed product should be merged into the index");
+        assertEquals(0, new BigDecimal("250.00").compareTo(pricierThan100.get(0).getPrice()), "Slices stay sorted");
+    }
+
+    @Test
+    void testConcurrentMissesShareOneLoad() throws Exception {
+        log.info("=== Test single-flight loading on concurrent cache misses ===");
+
+        Long userId = userRepository.findAll().get(0).getId();
+        sessionFactory.getCache().evictAllRegions();
+        statistics.clear();
+
+        int callers = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Optional<Users>>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return userService.findById(userId);
+                }));
+            }
+            start.countDown();
+            for (Future<Optional<Users>> result : results) {
+                assertTrue(result.get(10, TimeUnit.SECONDS).isPresent(), "Every caller should get the user");
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(
+            1, statistics.getEntityLoadCount() + statistics.getSecondLevelCacheHitCount(),
+            "Only one caller should have reached the repository"
+        );
+
+        var nativeCache = (com.github.benmanes.caffeine.cache.Cache<?, ?>) cacheManager.getCache("users")
+            .getNativeCache();
+        assertTrue(
+            nativeCache.policy().refreshAfterWrite().isPresent(), "Hot users should be refreshed ahead of expiry");
+    }
+
+    @Test
+    void testKeysetPaginationAndStreamingVisitEveryProductOnce() {
+        log.info("=== Test keyset pages and streaming over products with user ===");
+
+        List<Long> paged = new ArrayList<>();
+        Long cursor = 0L;
+        do {
+            KeysetPage<Product> page = productService.findPageWithUser(cursor, 1);
+            page.items().forEach(product -> paged.add(product.getId()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        List<Long> streamed = new ArrayList<>();
+        productService.streamAllWithUser(product -> {
+            assertNotNull(product.getUser().getName(), "Streamed products should carry their user");
+            streamed.add(product.getId());
+        });
+
+        assertEquals(productRepository.count(), paged.size(), "Pages should cover every product");
+        assertEquals(paged, streamed, "Streaming should return the same products in id order");
+    }
+
+    @Test
+    void testBatchLookupLoadsOnlyMissesAndFillsTheCache() {
+        log.info("=== Test cache-first batch lookup of users ===");
+
+        List<Long> ids = userRepository.findAll().stream().map(Users::getId).toList();
+        Long cachedId = ids.get(0);
+        Long missingId = -1L;
+        userService.findById(cachedId);
+
+        List<Users> users = userService.findAllById(List.of(missingId, ids.get(1), cachedId, ids.get(1)));
+
+        assertEquals(List.of(ids.get(1), cachedId), users.stream().map(Users::getId).toList());
+
+        org.springframework.cache.Cache cache = cacheManager.getCache("users");
+        assertNotNull(cache.get(CacheKey.userById(ids.get(1))), "Loaded misses should be written to the cache");
+        org.springframework.cache.Cache.ValueWrapper absent = cache.get(CacheKey.userById(missingId));
+        assertNotNull(absent, "Unknown ids should be remembered as absent");
+        assertNull(absent.get(), "Unknown ids should be cached as null");
+    }
+
+    @Test
+    void testBatchLookupSeesQueuedUpdatesAndSkipsFilteredMisses() {
+        log.info("=== Test batch lookups against write-behind and the existence filters ===");
+
+        existenceFilter.rebuild();
+        writeBehindProperties.setEnabled(true);
+        Product product = productRepository.findAll().get(0);
+        product.setName("Queued");
+        productService.save(product);
+        cacheManager.getCache("products").clear();
+        statistics.clear();
+
+        List<Product> found = productService.findAllById(List.of(product.getId(), product.getId() + 1_000_000));
+
+        assertEquals(List.of("Queued"), found.stream().map(Product::getName).toList(),
+            "A batch lookup should see the queued update, like a single one");
+        assertEquals(0, statistics.getPrepareStatementCount(),
+            "Neither the queued product nor an id missing from the filter should be queried");
+        assertEquals("Queued", productService.findById(product.getId()).orElseThrow().getName(),
+            "The queued state should be what got cached");
+    }
+
+    @Test
+    void testCacheMetersRecordHitsMissesAndLoads() {
+        log.info("=== Test per-cache and per-region meters ===");
+
+        Long id = userRepository.findAll().get(0).getId();
+        userService.findById(id);
+        userService.findById(id);
+
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "users").tag("result", "miss")
+            .counter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "users").tag("result", "hit")
+            .counter().count());
+        assertEquals(1L, meterRegistry.get("cache.load").tag("cache", "users").tag("result", "success")
+            .timer().count());
+        assertEquals(1.0, meterRegistry.get("cache.size").tag("cache", "users").gauge().value());
+
+        assertFalse(meterRegistry.find("hibernate.cache.region.gets").functionCounters().isEmpty(),
+            "Every L2 region should have hit and miss meters");
+        assertTrue(meterRegistry.get("hibernate.cache.region.puts").tag("region", Users.class.getName())
+            .functionCounter().count() >= 1, "Loading the user should have put it into its L2 region");
+        assertNotNull(meterRegistry.find("hibernate.cache.region.evictions").tag("region", Users.class.getName())
+            .functionCounter(), "L2 evictions should be metered per region");
+        for (String name : List.of("cache.gets", "cache.puts", "cache.evictions")) {
+            assertTrue(meterRegistry.find(name).meters().stream()
+                    .map(meter -> meter.getId().getTags().stream().map(io.micrometer.core.instrument.Tag::getKey)
+                        .collect(Collectors.toSet()))
+                    .distinct()
+                    .count() <= 1,
+                "Every " + name + " meter should carry the same tag keys");
+        }
+    }
+
+    @Test
+    void testL2RegionsLiveInTheConfiguredEhcacheManager() {
+        log.info("=== Test L2 regions come from the configured Ehcache manager ===");
+
+        Long id = userRepository.findAll().get(0).getId();
+        sessionFactory.getCache().evictAllRegions();
+        userRepository.findById(id);
+
+        javax.cache.Cache<Object, Object> region = jcacheManager.getCache(Users.class.getName());
+        assertNotNull(region, "The Users region should be the one declared in the Ehcache configuration");
+        assertTrue(region.iterator().hasNext(), "Loading a user should store it in that region");
+    }
+
+    @Test
+    void testWarmUpPreloadsRecordedHotKeys(@TempDir Path dir) {
+        log.info("=== Test cache warm-up from a recorded access profile ===");
+
+        cacheProperties.getWarmup().setProfileFile(dir.resolve("cache-profile"));
+        List<Long> ids = userRepository.findAll().stream().map(Users::getId).toList();
+        ids.forEach(userService::findById);
+        cacheWarmer.saveProfile();
+
+        org.springframework.cache.Cache cache = cacheManager.getCache("users");
+        cache.clear();
+        assertEquals(ids.size(), cacheWarmer.warmUp(), "Every recorded key should be preloaded");
+
+        ids.forEach(id -> assertNotNull(cache.get(CacheKey.userById(id)), "User " + id + " should be warm"));
+    }
+
+    @Test
+    void testBulkInsertUsesJdbcBatches() {
+        log.info("=== Test bulk product insert in JDBC batches ===");
+
+        Users owner = new Users();
+        owner.setId(userRepository.findAll().get(0).getId());
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Product product = new Product();
+            product.setName("Bulk " + i);
+            product.setPrice(BigDecimal.TEN);
+            product.setUser(owner);
+            products.add(product);
+        }
+        long before = productRepository.count();
+        statistics.clear();
+
+        BulkInsertResult result = productService.saveAll(products);
+
+        assertEquals(500, result.inserted());
+        assertTrue(statistics.getPrepareStatementCount() < 50,
+            "500 rows should take a few batched inserts and sequence calls, not one statement per row, was "
+                + statistics.getPrepareStatementCount());
+        assertEquals(before + 500, productRepository.count());
+    }
+
+    @Test
+    void testConcurrentMissesOnVirtualThreadsShareOneLoad() throws Exception {
+        log.info("=== Test single-flight loading from virtual threads ===");
+
+        Long userId = userRepository.findAll().get(0).getId();
+        int callers = 32;
+        CountDownLatch start = new CountDownLatch(1);
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Optional<Users>>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return userService.findById(userId);
+                }));
+            }
+            start.countDown();
+            for (Future<Optional<Users>> result : results) {
+                assertTrue(result.get(10, TimeUnit.SECONDS).isPresent(), "Every caller should get the user");
+            }
+        }
+
+        assertEquals(1L, meterRegistry.get("cache.load").tag("cache", "users").tag("result", "success")
+            .timer().count(), "Only one caller should have loaded the user");
+    }
+
+    @Test
+    void testUserViewIsCachedWithoutLoadingTheEntity() {
+        log.info("=== Test cached projections ===");
+
+        Users user = userRepository.findAll().get(0);
+        statistics.clear();
+
+        UserView view = userService.findViewById(user.getId()).orElseThrow();
+        userService.findViewById(user.getId());
+
+        assertEquals(user.getEmail(), view.email());
+        assertEquals(0, statistics.getEntityLoadCount(), "A projection should not load the entity");
+        assertEquals(1, statistics.getQueryExecutionCount(), "The second read should come from the cache");
+        assertTrue(cacheManager.getCache("users").get(CacheKey.of(QueryKind.USER_VIEW_BY_ID, user.getId()))
+            .get() instanceof UserView, "The projection, not the entity, should be cached");
+
+        user.setName("Renamed");
+        userService.save(user);
+        assertEquals("Renamed", userService.findViewById(user.getId()).orElseThrow().name(),
+            "Writing the user should evict its cached view");
+    }
+
+    @Test
+    void testEncodedResponsesFollowTheObjectCache() {
+        log.info("=== Test pre-encoded JSON responses ===");
+
+        responseCacheProperties.setEnabled(true);
+        Users user = userRepository.findAll().get(0);
+
+        var first = userController.getUserById(user.getId());
+        var second = userController.getUserById(user.getId());
+
+        assertTrue(first.getBody() instanceof byte[], "The body should be pre-encoded JSON");
+        assertSame(first.getBody(), second.getBody(), "A cache hit should reuse the encoded body");
+        assertEquals(first.getHeaders().getETag(), second.getHeaders().getETag());
+
+        user.setName("Renamed");
+        userService.save(user);
+        var afterWrite = userController.getUserById(user.getId());
+
+        assertNotSame(first.getBody(), afterWrite.getBody(), "Evicting the object should invalidate the body");
+        assertFalse(first.getHeaders().getETag().equals(afterWrite.getHeaders().getETag()),
+            "A changed user should get a new ETag");
+        assertTrue(new String((byte[]) afterWrite.getBody(), StandardCharsets.UTF_8)
+            .contains("Renamed"));
+    }
+
+    @Test
+    void testCommittedWritesAreBroadcastOnceFlushed() throws Exception {
+        log.info("=== Test broadcasting committed changes to other instances ===");
+
+        List<String> received = new CopyOnWriteArrayList<>();
+        InMemoryInvalidationTransport peer = new InMemoryInvalidationTransport(cacheProperties.getBus().getChannel());
+        peer.subscribe(received::add, () -> { });
+        try {
+            invalidationBus.flush();
+            received.clear();
+
+            Users user = userRepository.findAll().get(0);
+            user.setName("Renamed once");
+            user = userService.save(user);
+            user.setName("Renamed twice");
+            userService.save(user);
+            invalidationBus.flush();
+
+            assertEquals(1, received.size(), "Both writes should go out in one message");
+            InvalidationBatch batch = objectMapper.readValue(received.get(0), InvalidationBatch.class);
+            assertEquals(invalidationBus.getNodeId(), batch.origin());
+            assertEquals(List.of(user.getId()), batch.users().stream().map(UserChangedEvent::id).toList(),
+                "Repeated writes of one user should be sent once");
+        }
+        finally {
+            peer.close();
+        }
+    }
+
+    @Test
+    void testRemoteInvalidationEvictsLocalCaches() throws Exception {
+        log.info("=== Test applying invalidations from another instance ===");
+
+        Users user = userRepository.findAll().get(0);
+        userService.findById(user.getId());
+        assertNotNull(cacheManager.getCache("users").get(CacheKey.userById(user.getId())));
+        assertTrue(sessionFactory.getCache().containsEntity(Users.class, user.getId()));
+
+        List<String> received = new CopyOnWriteArrayList<>();
+        InMemoryInvalidationTransport peer = new InMemoryInvalidationTransport(cacheProperties.getBus().getChannel());
+        peer.subscribe(received::add, () -> { });
+        try {
+            UserChangedEvent change = new UserChangedEvent(user.getId(), user.getEmail(), user.getAge(), false);
+            peer.publish(objectMapper.writeValueAsString(new InvalidationBatch("peer", List.of(change), List.of())));
+
+            assertNull(cacheManager.getCache("users").get(CacheKey.userById(user.getId())),
+                "A peer's change should evict the Spring cache entry");
+            assertFalse(sessionFactory.getCache().containsEntity(Users.class, user.getId()),
+                "A peer's change should evict the L2 entry");
+
+            invalidationBus.flush();
+            assertEquals(1, received.size(), "An applied change should not be broadcast again");
+        }
+        finally {
+            peer.close();
+        }
+    }
+
+    @Test
+    void testInvalidationsThatCouldNotBeSentAreRetried() throws Exception {
+        log.info("=== Test failed invalidation broadcasts ===");
+
+        AtomicBoolean failing = new AtomicBoolean(true);
+        List<String> sent = new CopyOnWriteArrayList<>();
+        InvalidationTransport flaky = new InvalidationTransport() {
+            @Override
+            public int maxMessageBytes() {
+                return Integer.MAX_VALUE;
+            }
+
+            @Override
+            public boolean publish(String message) {
+                return !failing.get() && sent.add(message);
+            }
+
+            @Override
+            public void subscribe(Consumer<String> listener, Runnable missedMessages) {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        CacheInvalidationBus bus = new CacheInvalidationBus(
+            flaky, objectMapper, eventPublisher, entityManagerFactory, cacheManager, rangeQueryCache, existenceFilter
+        );
+
+        bus.onUserChanged(new UserChangedEvent(1L, "first@example.com", 30, false));
+        bus.flush();
+        assertTrue(sent.isEmpty());
+
+        bus.onUserChanged(new UserChangedEvent(2L, "second@example.com", 40, false));
+        failing.set(false);
+        bus.flush();
+        assertEquals(1, sent.size());
+        InvalidationBatch batch = objectMapper.readValue(sent.get(0), InvalidationBatch.class);
+        assertEquals(Set.of(1L, 2L), batch.users().stream().map(UserChangedEvent::id).collect(Collectors.toSet()),
+            "A change whose message failed should go out with the next flush");
+    }
+
+    @Test
+    void testWriteBehindCoalescesUpdatesIntoOneWrite() {
+        log.info("=== Test write-behind product updates ===");
+
+        writeBehindProperties.setEnabled(true);
+        Product product = productRepository.findAll().get(0);
+        statistics.clear();
+
+        for (int i = 1; i <= 5; i++) {
+            product.setPrice(new BigDecimal(i + ".00"));
+            productService.save(product);
+        }
+
+        assertEquals(0, statistics.getEntityUpdateCount(), "Nothing should be written before the flush");
+        assertEquals(1, productWriteBehind.size(), "Updates of one product should take one slot");
+        assertEquals(new BigDecimal("5.00"), productService.findById(product.getId()).orElseThrow().getPrice(),
+            "Reads should see the queued update");
+
+        assertEquals(1, productWriteBehind.flushAll());
+        assertEquals(1, statistics.getEntityUpdateCount(), "Five updates should be written as one");
+        assertEquals(0, new BigDecimal("5.00")
+            .compareTo(productRepository.findById(product.getId()).orElseThrow().getPrice()));
+    }
+
+    @Test
+    void testRefreshKeepsQueuedWriteBehindState() {
+        log.info("=== Test refreshing a product with a queued update ===");
+
+        writeBehindProperties.setEnabled(true);
+        Product product = productRepository.findAll().get(0);
+        product.setPrice(new BigDecimal("42.00"));
+        productService.save(product);
+
+        Product refreshed = (Product) repositoryCacheLoader.load(CacheKey.productById(product.getId()));
+        assertEquals(new BigDecimal("42.00"), refreshed.getPrice(), "A refresh should not load the older row");
+        productWriteBehind.flushAll();
+    }
+
+    @Test
+    void testFullWriteBehindQueueWritesOnTheCallersThread() {
+        log.info("=== Test write-behind backpressure ===");
+
+        writeBehindProperties.setEnabled(true);
+        writeBehindProperties.setCapacity(1);
+        List<Product> products = productRepository.findAll();
+        products.get(0).setName("First");
+        products.get(1).setName("Second");
+
+        productService.save(products.get(0));
+        productService.save(products.get(1));
+
+        assertEquals(1, productWriteBehind.size(), "The queue should not grow past its capacity");
+        assertEquals("First", productRepository.findById(products.get(0).getId()).orElseThrow().getName(),
+            "The caller should have written the queued update to make room");
+        productWriteBehind.flushAll();
+        assertEquals("Second", productRepository.findById(products.get(1).getId()).orElseThrow().getName());
+    }
+
+    @Test
+    void testDroppedWriteBehindUpdateIsEvictedAndCallerStateUntouched() {
+        log.info("=== Test write-behind updates that never reach the database ===");
+
+        writeBehindProperties.setEnabled(true);
+        List<Product> products = productRepository.findAll();
+        Product unversioned = products.get(0);
+        unversioned.setVersion(null);
+        unversioned.setName("Last writer");
+        Product orphan = products.get(1);
+        orphan.setName("Never written");
+        productService.save(unversioned);
+        productService.save(orphan);
+        // a bulk delete raises no entity event, so only the write-behind queue can notice
+        productRepository.deleteByIdReturningCount(orphan.getId());
+
+        assertEquals(2, productWriteBehind.flushAll());
+
+        assertNull(unversioned.getVersion(), "Writing should not touch the caller's instance");
+        assertEquals("Last writer", productRepository.findById(unversioned.getId()).orElseThrow().getName());
+        assertTrue(productService.findById(orphan.getId()).isEmpty(),
+            "The cached state of an update that was dropped should be evicted");
+    }
+
+    @Test
+    void testAsyncLookupCompletesInlineOnAHit() throws Exception {
+        log.info("=== Test async lookups ===");
+
+        Long userId = userRepository.findAll().get(0).getId();
+
+        var miss = userService.findByIdAsync(userId);
+        assertTrue(miss.get(10, TimeUnit.SECONDS).isPresent());
+        var hit = userService.findByIdAsync(userId);
+
+        assertTrue(hit.isDone(), "A cached user should complete without going to the pool");
+        assertSame(miss.get().orElseThrow(), hit.get().orElseThrow(), "Both should see the cached user");
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "users").tag("result", "miss")
+            .counter().count(), "The async miss should be counted once");
+    }
+
+    @Test
+    void testDashboardFansOutAndCombines() throws Exception {
+        log.info("=== Test the user dashboard ===");
+
+        Long userId = userRepository.findAll().get(0).getId();
+
+        var response = userController.getUserDashboard(userId, new BigDecimal("100")).get(10, TimeUnit.SECONDS);
+
+        UserDashboard dashboard = response.getBody();
+        assertNotNull(dashboard);
+        assertEquals(userId, dashboard.user().id());
+        assertEquals(2, dashboard.products().size());
+        assertEquals(1, dashboard.productsAbovePrice().size(), "Only the laptop costs more than 100");
+        assertEquals(404, userController.getUserDashboard(-1L, null).get(10, TimeUnit.SECONDS)
+            .getStatusCode().value());
+    }
+
+    @Test
+    void testConditionalUpdateIsOneStatementAndChecksTheVersion() {
+        log.info("=== Test conditional versioned updates ===");
+
+        Users user = userRepository.findAll().get(0);
+        userService.findById(user.getId());
+        statistics.clear();
+
+        Users update = new Users();
+        update.setId(user.getId());
+        update.setName("Renamed");
+        update.setEmail(user.getEmail());
+        update.setAge(user.getAge());
+        update.setVersion(user.getVersion());
+
+        assertEquals(1, userService.updateIfExists(update));
+        assertEquals(1, statistics.getPrepareStatementCount(), "The update should not read the user first");
+        assertEquals(user.getVersion() + 1, update.getVersion());
+        assertEquals("Renamed", userService.findById(user.getId()).orElseThrow().getName(),
+            "The cached user should be evicted after commit");
+
+        update.setVersion(user.getVersion());
+        assertThrows(OptimisticLockingFailureException.class, () -> userService.updateIfExists(update),
+            "An update based on an old version should be rejected");
+
+        update.setId(-1L);
+        update.setVersion(null);
+        assertEquals(0, userService.updateIfExists(update), "A missing user should report no rows");
+    }
+
+    @Test
+    void testConditionalDeleteReportsRowsAndEvicts() {
+        log.info("=== Test conditional deletes ===");
+
+        Product product = productRepository.findAll().get(0);
+        productService.findById(product.getId());
+
+        assertEquals(1, productService.deleteIfExists(product.getId()));
+        assertEquals(0, productService.deleteIfExists(product.getId()), "A second delete should find nothing");
+        assertTrue(productService.findById(product.getId()).isEmpty(), "The cached product should be evicted");
+
+        Long userId = userRepository.findAll().get(0).getId();
+        assertEquals(1, userService.deleteIfExists(userId), "The user should be deleted with their products");
+        assertTrue(userService.findById(userId).isEmpty());
+    }
+
+    @Test
+    void testConditionalWritesEvictOnlyTheirRowsFromL2() {
+        log.info("=== Test conditional writes keep the rest of the L2 regions ===");
+
+        List<Users> users = userRepository.findAll();
+        List<Product> products = productRepository.findAll();
+        Cache l2 = sessionFactory.getCache();
+        assertTrue(l2.containsEntity(Users.class, users.get(1).getId()));
+        assertTrue(l2.containsEntity(Product.class, products.get(1).getId()));
+
+        Users update = users.get(0);
+        update.setName("Renamed");
+        assertEquals(1, userService.updateIfExists(update));
+        assertEquals(1, productService.deleteIfExists(products.get(0).getId()));
+
+        assertFalse(l2.containsEntity(Users.class, update.getId()), "The updated user should be evicted");
+        assertFalse(l2.containsEntity(Product.class, products.get(0).getId()), "The deleted product should be evicted");
+        assertTrue(l2.containsEntity(Users.class, users.get(1).getId()), "Other users should stay in L2");
+        assertTrue(l2.containsEntity(Product.class, products.get(1).getId()), "Other products should stay in L2");
+        assertEquals("Renamed", userRepository.findById(update.getId()).orElseThrow().getName());
+    }
+
+    @Test
+    void testMissingKeysAreCachedApartFromFoundOnes() {
+        log.info("=== Test negative caching ===");
+
+        String email = "nobody" + counter.incrementAndGet() + "@example.com";
+        existenceFilter.addUser(null, email);
+
+        assertTrue(userService.findByEmail(email).isEmpty());
+        assertTrue(userService.findByEmail(email).isEmpty());
+        assertEquals(1, statistics.getQueryExecutionCount(), "The second probe should hit the negative cache");
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "users.negative").tag("result", "hit")
+            .counter().count());
+        assertEquals(0.0, meterRegistry.get("cache.size").tag("cache", "users").gauge().value(),
+            "Missing keys should not take room from found ones");
+
+        Users user = new Users();
+        user.setName("Newcomer");
+        user.setEmail(email);
+        userService.save(user);
+        assertTrue(userService.findByEmail(email).isPresent(), "Inserting the user should evict the negative entry");
+    }
+
+    @Test
+    void testExistenceFilterSkipsLookupsOfKeysThatCannotExist() {
+        log.info("=== Test the existence filters ===");
+
+        existenceFilter.rebuild();
+        Long userId = userRepository.findAll().get(0).getId();
+        statistics.clear();
+
+        assertTrue(userService.findById(userId + 1_000_000).isEmpty());
+        assertTrue(userService.findByEmail("unknown" + counter.incrementAndGet() + "@example.com").isEmpty());
+        assertEquals(0, statistics.getPrepareStatementCount(), "Keys missing from the filters should not be queried");
+
+        assertTrue(userService.findById(userId).isPresent(), "Existing keys should still be found");
+
+        Users user = new Users();
+        user.setName("Newcomer");
+        user.setEmail("newcomer" + counter.incrementAndGet() + "@example.com");
+        user = userRepository.save(user);
+        assertTrue(userService.findByEmail(user.getEmail()).isPresent(), "Inserted rows should join the filters");
+    }
+
+    @Test
+    void testInsertCommittedDuringARebuildStaysInTheFilters() throws Exception {
+        log.info("=== Test an insert committed while the existence filters are rebuilt ===");
+
+        CountDownLatch inserted = new CountDownLatch(1);
+        CountDownLatch rebuilt = new CountDownLatch(1);
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try {
+            Future<Users> insert = writer.submit(() -> transactionTemplate.execute(status -> {
+                Users user = new Users();
+                user.setName("Late committer");
+                user.setEmail("late" + counter.incrementAndGet() + "@example.com");
+                // the post-insert event fires here, before the rebuild starts
+                user = userRepository.saveAndFlush(user);
+                inserted.countDown();
+                try {
+                    rebuilt.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return user;
+            }));
+            assertTrue(inserted.await(10, TimeUnit.SECONDS));
+            existenceFilter.rebuild();
+            rebuilt.countDown();
+            Users user = insert.get(10, TimeUnit.SECONDS);
+
+            assertTrue(existenceFilter.mightContainUser(user.getId()), "The rebuild should replay the insert");
+            assertTrue(existenceFilter.mightContainEmail(user.getEmail()));
+            assertTrue(userService.findById(user.getId()).isPresent());
+        }
+        finally {
+            writer.shutdownNow();
+        }
+    }
+
+    @Test
+    void testUnifiedStoreKeepsEntitiesOnlyInL2() {
+        log.info("=== Test the unified entity store ===");
+
+        cacheProperties.setUnified(true);
+        Users user = userRepository.findAll().get(0);
+        sessionFactory.getCache().evictAllRegions();
+
+        userService.findById(user.getId());
+        var nativeCache = (com.github.benmanes.caffeine.cache.Cache<?, ?>) cacheManager.getCache("users")
+            .getNativeCache();
+        Object stored = nativeCache.asMap().get(CacheKey.userById(user.getId()));
+        assertNotNull(stored);
+        assertFalse(stored instanceof Users, "The Spring cache should hold a reference, not the user");
+
+        statistics.clear();
+        double hits = meterRegistry.get("cache.gets").tag("cache", "users").tag("result", "hit").counter().count();
+        double misses = meterRegistry.get("cache.gets").tag("cache", "users").tag("result", "miss").counter().count();
+        assertEquals(user.getEmail(), userService.findById(user.getId()).orElseThrow().getEmail());
+        assertEquals(0, statistics.getPrepareStatementCount(), "The reference should resolve through L2");
+        assertEquals(1, statistics.getSecondLevelCacheHitCount());
+        assertEquals(hits + 1, meterRegistry.get("cache.gets").tag("cache", "users").tag("result", "hit")
+            .counter().count(), "A hit should be counted once");
+        assertEquals(misses, meterRegistry.get("cache.gets").tag("cache", "users").tag("result", "miss")
+            .counter().count());
+
+        sessionFactory.getCache().evictEntityData(Users.class, user.getId());
+        assertTrue(userService.findById(user.getId()).isPresent(), "A user gone from L2 should be reloaded");
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            statistics.clear();
+            assertTrue(userService.findById(user.getId()).isPresent());
+            assertEquals(0, statistics.getSessionOpenCount(), "A hit should use the transaction's session");
+        });
+    }
+
+    @Test
+    void testCacheWritesWaitForCommitAndAreDroppedOnRollback() {
+        log.info("=== Test transaction-aware cache writes ===");
+
+        Long userId = userRepository.findAll().get(0).getId();
+        String name = userService.findById(userId).orElseThrow().getName();
+        var users = cacheManager.getCache("users");
+        var nativeUsers = (com.github.benmanes.caffeine.cache.Cache<?, ?>) users.getNativeCache();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Users user = userRepository.findById(userId).orElseThrow();
+            user.setName("Rolled back");
+            userService.save(user);
+            assertEquals("Rolled back", ((Users) users.get(CacheKey.userById(userId)).get()).getName(),
+                "The transaction should see its own pending write");
+            assertEquals(name, ((Users) nativeUsers.asMap().get(CacheKey.userById(userId))).getName(),
+                "Other readers should not see it before commit");
+            status.setRollbackOnly();
+        });
+        assertEquals(name, userService.findById(userId).orElseThrow().getName(),
+            "A rollback should leave no phantom entry");
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Users user = userRepository.findById(userId).orElseThrow();
+            user.setName("Committed");
+            userService.save(user);
+        });
+        assertEquals("Committed", userService.findById(userId).orElseThrow().getName());
+    }
+
+    @Test
+    void testNestedTransactionsKeepTheirOwnCacheWrites() {
+        log.info("=== Test cache writes of nested transactions ===");
+
+        List<Users> allUsers = userRepository.findAll();
+        Long outerId = allUsers.get(0).getId();
+        Long innerId = allUsers.get(1).getId();
+        String outerName = userService.findById(outerId).orElseThrow().getName();
+        userService.findById(innerId);
+        var users = cacheManager.getCache("users");
+        var nativeUsers = (com.github.benmanes.caffeine.cache.Cache<?, ?>) users.getNativeCache();
+        TransactionTemplate requiresNew = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        transactionTemplate.executeWithoutResult(outer -> {
+            Users user = userRepository.findById(outerId).orElseThrow();
+            user.setName("Outer");
+            userService.save(user);
+            requiresNew.executeWithoutResult(inner -> {
+                assertEquals(outerName, ((Users) users.get(CacheKey.userById(outerId)).get()).getName(),
+                    "The inner transaction should not see the outer one's pending write");
+                Users other = userRepository.findById(innerId).orElseThrow();
+                other.setName("Inner");
+                userService.save(other);
+            });
+            assertEquals("Inner", ((Users) nativeUsers.asMap().get(CacheKey.userById(innerId))).getName(),
+                "The inner commit should apply its own write");
+            assertEquals(outerName, ((Users) nativeUsers.asMap().get(CacheKey.userById(outerId))).getName(),
+                "The inner commit should not apply the outer transaction's write");
+            assertEquals("Outer", ((Users) users.get(CacheKey.userById(outerId)).get()).getName(),
+                "The outer transaction should still see its pending write");
+
+            requiresNew.executeWithoutResult(inner -> {
+                Users other = userRepository.findById(innerId).orElseThrow();
+                other.setName("Rolled back");
+                userService.save(other);
+                inner.setRollbackOnly();
+            });
+            assertEquals("Outer", ((Users) users.get(CacheKey.userById(outerId)).get()).getName(),
+                "An inner rollback should not discard the outer transaction's write");
+        });
+        assertEquals("Outer", userService.findById(outerId).orElseThrow().getName());
+        assertEquals("Inner", userService.findById(innerId).orElseThrow().getName());
+    }
+
+    @Test
+    void testLoadOvertakenByAnEvictionIsNotCached() {
+        log.info("=== Test loads racing with evictions ===");
+
+        var products = cacheManager.getCache("products");
+        Product product = productRepository.findAll().get(0);
+        CacheKey key = CacheKey.productById(product.getId());
+
+        Product loaded = products.get(key, () -> {
+            products.evict(key);
+            return product;
+        });
+
+        assertSame(product, loaded, "The caller should still get what it loaded");
+        assertNull(products.get(key), "A load that started before the eviction should not be cached");
+    }
+
+    @Test
+    void testLoadOvertakenByACommittedUpdateIsNotCached() {
+        log.info("=== Test loads racing with committed writes ===");
+
+        Long userId = userRepository.findAll().get(0).getId();
+        CacheKey key = CacheKey.userById(userId);
+        var users = cacheManager.getCache("users");
+
+        Users loaded = users.get(key, () -> {
+            Users stale = userRepository.findById(userId).orElseThrow();
+            Users update = userRepository.findById(userId).orElseThrow();
+            update.setName("Updated during the load");
+            userService.updateIfExists(update);
+            return stale;
+        });
+
+        assertNotEquals("Updated during the load", loaded.getName(), "The load read the row before the update");
+        assertNull(users.get(key), "A load overtaken by a committed update of its row should not be cached");
+        assertEquals("Updated during the load", userService.findById(userId).orElseThrow().getName());
+    }
+
+    @Test
+    void testEntityCodecRoundTripsCachedState() throws Exception {
+        log.info("=== Test the compact entity codec ===");
+
+        Users user = userRepository.findAll().get(0);
+        List<Product> products = productRepository.findByUserId(user.getId());
+        Product big = new Product(1L, "Yacht", null, new BigDecimal("12345678901234567890.12"), null, null);
+
+        Users decodedUser = (Users) EntityCodec.decode(EntityCodec.encode(user));
+        assertEquals(user.getId(), decodedUser.getId());
+        assertEquals(user.getEmail(), decodedUser.getEmail());
+        assertEquals(user.getAge(), decodedUser.getAge());
+        assertEquals(user.getVersion(), decodedUser.getVersion());
+        assertNull(decodedUser.getProducts(), "Associations should not be encoded");
+
+        @SuppressWarnings("unchecked")
+        List<Product> decodedProducts = (List<Product>) EntityCodec.decode(EntityCodec.encode(products));
+        assertEquals(products.size(), decodedProducts.size());
+        assertEquals(products.get(0).getPrice(), decodedProducts.get(0).getPrice(), "The price scale should be kept");
+        assertEquals(user.getId(), decodedProducts.get(0).getUser().getId());
+        assertEquals(big.getPrice(), ((Product) EntityCodec.decode(EntityCodec.encode(big))).getPrice());
+
+        CompactValueSerializer serializer = new CompactValueSerializer(getClass().getClassLoader());
+        var binary = serializer.serialize(products.get(0));
+        assertTrue(binary.remaining() < 64, "A product should take a few dozen bytes, not " + binary.remaining());
+        assertEquals(products.get(0).getName(), ((Product) serializer.read(binary)).getName());
+    }
+
+    @Test
+    void testTieredSpringCachesReadEntitiesBackThroughTheCodec() throws Exception {
+        log.info("=== Test entities read back from the off-heap tier ===");
+
+        List<Product> products = productRepository.findByUserId(userRepository.findAll().get(0).getId());
+        Product product = products.get(0);
+        try (javax.cache.CacheManager tiered = Caching.getCachingProvider().getCacheManager(
+            new ClassPathResource("ehcache-tiered.xml").getURI(), getClass().getClassLoader()
+        )) {
+            javax.cache.Cache<Object, Object> cache = tiered.getCache("products");
+            cache.put(CacheKey.productById(product.getId()), product);
+            CacheKey byUser = CacheKey.of(QueryKind.PRODUCTS_BY_USER, product.getUser().getId());
+            CacheKey view = CacheKey.of(QueryKind.PRODUCT_VIEW_BY_ID, product.getId());
+            cache.put(byUser, products);
+            cache.put(view, ProductView.of(product));
+            // more entries than the heap tier holds, so the ones above are read back from off-heap
+            for (long id = 1; id <= 1000; id++) {
+                cache.put(CacheKey.productById(-id), product);
+            }
+
+            Product read = (Product) cache.get(CacheKey.productById(product.getId()));
+            assertNotSame(product, read);
+            assertEquals(product.getName(), read.getName());
+            assertEquals(product.getPrice(), read.getPrice());
+            assertEquals(product.getVersion(), read.getVersion());
+            assertEquals(Users.class, read.getUser().getClass(),
+                "The owner should come back as the codec's id-only user, not a serialized proxy");
+            assertEquals(product.getUser().getId(), read.getUser().getId());
+            @SuppressWarnings("unchecked")
+            List<Product> readList = (List<Product>) cache.get(byUser);
+            assertEquals(products.stream().map(Product::getId).toList(),
+                readList.stream().map(Product::getId).toList());
+            assertEquals(ProductView.of(product), cache.get(view),
+                "Values the codec does not cover should fall back to Java serialization");
+        }
+    }
+
+    @Test
+    void testReadMostlyEntriesLiveLongerThanVolatileOnes() {
+        log.info("=== Test adaptive expiry ===");
+
+        List<Product> products = productRepository.findAll();
+        Product stable = products.get(0);
+        Product volatileOne = products.get(1);
+        for (int i = 0; i < 20; i++) {
+            productService.findById(stable.getId());
+        }
+        for (int i = 0; i < 5; i++) {
+            productService.findById(volatileOne.getId());
+            eventPublisher.publishEvent(new ProductChangedEvent(volatileOne.getId(), null, null, false));
+        }
+        cacheManager.getCache("products").evict(CacheKey.productById(stable.getId()));
+        productService.findById(stable.getId());
+        productService.findById(volatileOne.getId());
+
+        var nativeProducts = (com.github.benmanes.caffeine.cache.Cache<Object, ?>) cacheManager.getCache("products")
+            .getNativeCache();
+        var expiration = nativeProducts.policy().expireVariably().orElseThrow();
+        var stableTtl = expiration.getExpiresAfter(CacheKey.productById(stable.getId())).orElseThrow();
+        var volatileTtl = expiration.getExpiresAfter(CacheKey.productById(volatileOne.getId())).orElseThrow();
+        assertTrue(stableTtl.compareTo(volatileTtl) > 0,
+            "A read-mostly product should be kept longer: " + stableTtl + " vs " + volatileTtl);
+        assertTrue(meterRegistry.get("cache.ttl").tag("cache", "products").timer().count() >= 2,
+            "The chosen lifetimes should be recorded");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testOnlyCallerLookupsCountAsReads() {
+        log.info("=== Test the reads behind adaptive expiry ===");
+
+        Long productId = productRepository.findAll().get(0).getId();
+        CacheKey key = CacheKey.productById(productId);
+        for (int i = 0; i < 3; i++) {
+            productService.findById(productId);
+        }
+        assertEquals(2, keyActivity.reads(key), "Each hit of a caller should count once");
+
+        keyActivity.untracked(() -> productService.findById(productId));
+        assertEquals(2, keyActivity.reads(key), "Lookups on behalf of the cache, like warm-up, should not count");
+
+        var loading = (LoadingCache<Object, Object>) cacheManager.getCache("products").getNativeCache();
+        loading.refresh(key).join();
+        assertEquals(2, keyActivity.reads(key), "A background refresh should not count");
+    }
+
+    @Test
+    void testPriceChangesOnlyInvalidateThresholdsTheyReach() {
+        log.info("=== Test range-granular invalidation of threshold queries ===");
+
+        assertEquals(1, productService.findProductsWithPriceGreaterThan(new BigDecimal("100")).size());
+        Product mouse = productRepository.findAll().stream()
+            .filter(product -> product.getName().equals("Mouse"))
+            .findFirst()
+            .orElseThrow();
+        mouse.setPrice(new BigDecimal("60.00"));
+        productRepository.save(mouse);
+        statistics.clear();
+
+        assertEquals(1, productService.findProductsWithPriceGreaterThan(new BigDecimal("100")).size());
+        assertEquals(0, statistics.getPrepareStatementCount(),
+            "A change below the threshold should not make its query reload anything");
+
+        List<Product> pricierThan55 = productService.findProductsWithPriceGreaterThan(new BigDecimal("55"));
+        assertEquals(2, pricierThan55.size(), "A threshold the change crosses should see it");
+        assertEquals(0, new BigDecimal("60.00").compareTo(pricierThan55.get(0).getPrice()));
+        assertTrue(statistics.getPrepareStatementCount() > 0, "Only then should the changed row be reloaded");
+    }
+
+    @Test
+    void testRangeIndexReloadsWritesWithoutEventsOnceOld() {
+        log.info("=== Test the age bound of the range indexes ===");
+
+        assertEquals(1, productService.findProductsWithPriceGreaterThan(new BigDecimal("100")).size());
+        transactionTemplate.executeWithoutResult(status -> entityManager
+            .createNativeQuery("UPDATE product SET price = 500.00 WHERE name = 'Mouse'")
+            .executeUpdate());
+        assertEquals(1, productService.findProductsWithPriceGreaterThan(new BigDecimal("100")).size(),
+            "A write that raised no event is not seen while the index is young");
+
+        cacheProperties.getRangeIndex().setMaxAge(Duration.ZERO);
+        assertEquals(2, productService.findProductsWithPriceGreaterThan(new BigDecimal("100")).size(),
+            "An index past its age should be reloaded in full");
+    }
+}